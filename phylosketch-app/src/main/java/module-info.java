@@ -14,6 +14,7 @@ module phylosketch {
 	requires javafx.web;
 	requires org.apache.commons.numbers.gamma;
 	requires java.management;
+	requires jdk.management;
 	requires java.scripting;
 
 	requires phylosketch.ocr;
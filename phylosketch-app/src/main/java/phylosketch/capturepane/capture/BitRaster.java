@@ -0,0 +1,186 @@
+/*
+ * BitRaster.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.capturepane.capture;
+
+/**
+ * a packed binary raster, one bit per pixel
+ * Rows are stored consecutively in a single long array, each row starting on a new word,
+ * so a 4000x3000 mask occupies 1.5 MB instead of the 48 MB of an int[][] matrix.
+ * Daniel Huson, 10.2026
+ */
+public final class BitRaster {
+	private final int width;
+	private final int height;
+	private final int wordsPerRow;
+	private final long[] words;
+
+	/**
+	 * constructs an empty (all zero) raster
+	 *
+	 * @param width  width in pixels
+	 * @param height height in pixels
+	 */
+	public BitRaster(int width, int height) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid raster size: " + width + "x" + height);
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + 63) >>> 6;
+		this.words = new long[wordsPerRow * height];
+	}
+
+	private BitRaster(BitRaster that) {
+		this.width = that.width;
+		this.height = that.height;
+		this.wordsPerRow = that.wordsPerRow;
+		this.words = that.words.clone();
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * the row stride of the backing array, in 64-bit words
+	 */
+	public int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+	/**
+	 * the backing array, rows of {@link #getWordsPerRow()} words, bit x%64 of word x/64 holds pixel x
+	 */
+	public long[] getWords() {
+		return words;
+	}
+
+	public boolean get(int x, int y) {
+		return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * gets the value of a pixel, returning false for coordinates outside of the raster
+	 */
+	public boolean getSafe(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height && get(x, y);
+	}
+
+	public void set(int x, int y) {
+		words[y * wordsPerRow + (x >>> 6)] |= (1L << x);
+	}
+
+	public void clear(int x, int y) {
+		words[y * wordsPerRow + (x >>> 6)] &= ~(1L << x);
+	}
+
+	public void set(int x, int y, boolean value) {
+		if (value)
+			set(x, y);
+		else
+			clear(x, y);
+	}
+
+	/**
+	 * computes the 8-neighbour code of an interior pixel.
+	 * Bits 0-7 hold the neighbours in cyclic order: left, bottom-left, bottom, bottom-right, right, top-right, top and top-left,
+	 * that is P2-P9 in the usual notation of thinning algorithms.
+	 *
+	 * @param x x coordinate, must satisfy 0 &lt; x &lt; width-1
+	 * @param y y coordinate, must satisfy 0 &lt; y &lt; height-1
+	 * @return the code, 0-255
+	 */
+	public int neighborCode(int x, int y) {
+		return (get(x - 1, y) ? 1 : 0)
+			   | (get(x - 1, y + 1) ? 2 : 0)
+			   | (get(x, y + 1) ? 4 : 0)
+			   | (get(x + 1, y + 1) ? 8 : 0)
+			   | (get(x + 1, y) ? 16 : 0)
+			   | (get(x + 1, y - 1) ? 32 : 0)
+			   | (get(x, y - 1) ? 64 : 0)
+			   | (get(x - 1, y - 1) ? 128 : 0);
+	}
+
+	/**
+	 * computes the 8-neighbour code of any pixel, treating pixels outside of the raster as background
+	 *
+	 * @see #neighborCode(int, int)
+	 */
+	public int neighborCodeSafe(int x, int y) {
+		if (x > 0 && y > 0 && x < width - 1 && y < height - 1)
+			return neighborCode(x, y);
+		return (getSafe(x - 1, y) ? 1 : 0)
+			   | (getSafe(x - 1, y + 1) ? 2 : 0)
+			   | (getSafe(x, y + 1) ? 4 : 0)
+			   | (getSafe(x + 1, y + 1) ? 8 : 0)
+			   | (getSafe(x + 1, y) ? 16 : 0)
+			   | (getSafe(x + 1, y - 1) ? 32 : 0)
+			   | (getSafe(x, y - 1) ? 64 : 0)
+			   | (getSafe(x - 1, y - 1) ? 128 : 0);
+	}
+
+	public boolean contains(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	/**
+	 * count the number of set pixels
+	 *
+	 * @return number of foreground pixels
+	 */
+	public long cardinality() {
+		var count = 0L;
+		for (var word : words) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * determines whether at least the given number of pixels are set, stopping early
+	 *
+	 * @param count the count to reach
+	 * @return true, if at least count pixels are set
+	 */
+	public boolean cardinalityAtLeast(long count) {
+		var sum = 0L;
+		for (var word : words) {
+			sum += Long.bitCount(word);
+			if (sum >= count)
+				return true;
+		}
+		return sum >= count;
+	}
+
+	public BitRaster copy() {
+		return new BitRaster(this);
+	}
+
+	/**
+	 * memory used by the backing array, in bytes
+	 */
+	public long memoryBytes() {
+		return 8L * words.length;
+	}
+}
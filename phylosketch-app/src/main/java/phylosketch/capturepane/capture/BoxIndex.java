@@ -0,0 +1,324 @@
+/*
+ * BoxIndex.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.capturepane.capture;
+
+import javafx.geometry.Rectangle2D;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * static R-tree over the bounding boxes of items, bulk-loaded by sort-tile-recursive packing
+ * Supports containment and intersection queries, and enumeration of items by increasing distance from a point.
+ * Daniel Huson, 10.2026
+ */
+public class BoxIndex<T> {
+	private static final int NODE_CAPACITY = 16;
+
+	private final List<T> items;
+	private final Rectangle2D[] boxes;
+	/**
+	 * item indices in leaf order
+	 */
+	private final int[] order;
+	/**
+	 * levels of the tree, level 0 holds the leaves, whose children are ranges in order,
+	 * all other nodes have ranges of nodes of the level below as children
+	 */
+	private final List<Level> levels = new ArrayList<>();
+
+	/**
+	 * indexes the given items using the given box for each
+	 *
+	 * @param items the items
+	 * @param box   the box to use for each item, may be degenerate to index points
+	 */
+	public BoxIndex(List<T> items, Function<T, Rectangle2D> box) {
+		this.items = List.copyOf(items);
+		var n = this.items.size();
+		boxes = new Rectangle2D[n];
+		for (var i = 0; i < n; i++) {
+			boxes[i] = box.apply(this.items.get(i));
+		}
+
+		var entries = new Level(n);
+		for (var i = 0; i < n; i++) {
+			entries.set(i, boxes[i].getMinX(), boxes[i].getMinY(), boxes[i].getMaxX(), boxes[i].getMaxY(), i, i + 1);
+		}
+		var sorted = sortTileRecursive(entries);
+		order = new int[n];
+		for (var i = 0; i < n; i++) {
+			order[i] = sorted.start[i];
+		}
+
+		var level = pack(sorted);
+		levels.add(level);
+		while (level.size > 1) {
+			level = sortTileRecursive(level);
+			levels.set(levels.size() - 1, level);
+			level = pack(level);
+			levels.add(level);
+		}
+	}
+
+	public int size() {
+		return items.size();
+	}
+
+	public T getItem(int index) {
+		return items.get(index);
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * the box of the item with the given index
+	 */
+	public Rectangle2D getBox(int index) {
+		return boxes[index];
+	}
+
+	/**
+	 * is the given rectangle contained in the box of some item?
+	 */
+	public boolean anyContains(Rectangle2D rect) {
+		var found = new boolean[1];
+		search(node -> node.minX <= rect.getMinX() && node.minY <= rect.getMinY() && node.maxX >= rect.getMaxX() && node.maxY >= rect.getMaxY(),
+				i -> boxes[i].contains(rect), i -> found[0] = true, true);
+		return found[0];
+	}
+
+	/**
+	 * reports the index of every item whose box intersects the given rectangle
+	 */
+	public void forEachIntersecting(Rectangle2D rect, IntConsumer consumer) {
+		search(node -> node.minX <= rect.getMaxX() && node.maxX >= rect.getMinX() && node.minY <= rect.getMaxY() && node.maxY >= rect.getMinY(),
+				i -> boxes[i].getMinX() <= rect.getMaxX() && boxes[i].getMaxX() >= rect.getMinX() && boxes[i].getMinY() <= rect.getMaxY() && boxes[i].getMaxY() >= rect.getMinY(),
+				consumer, false);
+	}
+
+	/**
+	 * reports the index of every item whose box contains the given point
+	 */
+	public void forEachContaining(double x, double y, IntConsumer consumer) {
+		search(node -> node.minX <= x && node.maxX >= x && node.minY <= y && node.maxY >= y, i -> boxes[i].contains(x, y), consumer, false);
+	}
+
+	/**
+	 * enumerates the indices of all items by increasing distance of their boxes from the given point.
+	 * Items at the same distance are enumerated by increasing index.
+	 */
+	public PrimitiveIterator.OfInt nearest(double x, double y) {
+		return new NearestIterator(x, y);
+	}
+
+	/**
+	 * distance from a point to a box, 0 if the point lies inside
+	 */
+	public static double distance(double x, double y, double minX, double minY, double maxX, double maxY) {
+		var a = (x < minX ? minX - x : (x > maxX ? x - maxX : 0));
+		var b = (y < minY ? minY - y : (y > maxY ? y - maxY : 0));
+		return Math.sqrt(a * a + b * b);
+	}
+
+	private interface NodePredicate {
+		boolean test(NodeBox node);
+	}
+
+	private interface ItemPredicate {
+		boolean test(int item);
+	}
+
+	private record NodeBox(double minX, double minY, double maxX, double maxY) {
+	}
+
+	private void search(NodePredicate nodeTest, ItemPredicate itemTest, IntConsumer consumer, boolean stopAtFirst) {
+		if (items.isEmpty())
+			return;
+		var stack = new ArrayDeque<long[]>(); // pairs of level and node
+		var top = levels.size() - 1;
+		for (var i = 0; i < levels.get(top).size; i++)
+			stack.push(new long[]{top, i});
+		while (!stack.isEmpty()) {
+			var entry = stack.pop();
+			var level = levels.get((int) entry[0]);
+			var node = (int) entry[1];
+			if (!nodeTest.test(new NodeBox(level.minX[node], level.minY[node], level.maxX[node], level.maxY[node])))
+				continue;
+			if (entry[0] == 0) {
+				for (var k = level.start[node]; k < level.end[node]; k++) {
+					var item = order[k];
+					if (itemTest.test(item)) {
+						consumer.accept(item);
+						if (stopAtFirst)
+							return;
+					}
+				}
+			} else {
+				for (var child = level.start[node]; child < level.end[node]; child++)
+					stack.push(new long[]{entry[0] - 1, child});
+			}
+		}
+	}
+
+	/**
+	 * best-first traversal, nodes are expanded before items at the same distance, so that ties are broken by index
+	 */
+	private class NearestIterator implements PrimitiveIterator.OfInt {
+		private final double x;
+		private final double y;
+		// entries are level (-1 for items), index and distance
+		private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+
+		private record Entry(int level, int index, double distance) implements Comparable<Entry> {
+			@Override
+			public int compareTo(Entry that) {
+				var result = Double.compare(this.distance, that.distance);
+				if (result == 0)
+					result = -Integer.compare(this.level, that.level);
+				if (result == 0)
+					result = Integer.compare(this.index, that.index);
+				return result;
+			}
+		}
+
+		NearestIterator(double x, double y) {
+			this.x = x;
+			this.y = y;
+			if (!items.isEmpty()) {
+				var top = levels.size() - 1;
+				for (var i = 0; i < levels.get(top).size; i++)
+					queue.add(nodeEntry(top, i));
+			}
+		}
+
+		private Entry nodeEntry(int levelIndex, int node) {
+			var level = levels.get(levelIndex);
+			return new Entry(levelIndex, node, distance(x, y, level.minX[node], level.minY[node], level.maxX[node], level.maxY[node]));
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (!queue.isEmpty() && queue.peek().level() >= 0) {
+				var entry = queue.poll();
+				var level = levels.get(entry.level());
+				for (var child = level.start[entry.index()]; child < level.end[entry.index()]; child++) {
+					if (entry.level() == 0) {
+						var item = order[child];
+						var box = boxes[item];
+						queue.add(new Entry(-1, item, distance(x, y, box.getMinX(), box.getMinY(), box.getMaxX(), box.getMaxY())));
+					} else
+						queue.add(nodeEntry(entry.level() - 1, child));
+				}
+			}
+			return !queue.isEmpty();
+		}
+
+		@Override
+		public int nextInt() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return queue.poll().index();
+		}
+	}
+
+	/**
+	 * groups consecutive runs of NODE_CAPACITY entries into nodes of the next level
+	 */
+	private static Level pack(Level level) {
+		var count = (level.size + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		var parent = new Level(count);
+		for (var p = 0; p < count; p++) {
+			var start = p * NODE_CAPACITY;
+			var end = Math.min(level.size, start + NODE_CAPACITY);
+			double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+			for (var i = start; i < end; i++) {
+				minX = Math.min(minX, level.minX[i]);
+				minY = Math.min(minY, level.minY[i]);
+				maxX = Math.max(maxX, level.maxX[i]);
+				maxY = Math.max(maxY, level.maxY[i]);
+			}
+			parent.set(p, minX, minY, maxX, maxY, start, end);
+		}
+		return parent;
+	}
+
+	/**
+	 * reorders entries into vertical slices by center x, each sorted by center y, so that consecutive runs are compact
+	 */
+	private static Level sortTileRecursive(Level level) {
+		var n = level.size;
+		var byX = new Integer[n];
+		for (var i = 0; i < n; i++)
+			byX[i] = i;
+		Arrays.sort(byX, Comparator.comparingDouble(i -> level.minX[i] + level.maxX[i]));
+
+		var leaves = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		var slices = (int) Math.ceil(Math.sqrt(leaves));
+		var sliceSize = slices * NODE_CAPACITY;
+
+		var sorted = new Level(n);
+		var next = 0;
+		for (var s = 0; s < n; s += sliceSize) {
+			var slice = Arrays.copyOfRange(byX, s, Math.min(n, s + sliceSize));
+			Arrays.sort(slice, Comparator.comparingDouble(i -> level.minY[i] + level.maxY[i]));
+			for (var i : slice) {
+				sorted.set(next++, level.minX[i], level.minY[i], level.maxX[i], level.maxY[i], level.start[i], level.end[i]);
+			}
+		}
+		return sorted;
+	}
+
+	/**
+	 * the nodes of one level, as parallel arrays
+	 */
+	private static class Level {
+		final int size;
+		final double[] minX;
+		final double[] minY;
+		final double[] maxX;
+		final double[] maxY;
+		final int[] start;
+		final int[] end;
+
+		Level(int size) {
+			this.size = size;
+			minX = new double[size];
+			minY = new double[size];
+			maxX = new double[size];
+			maxY = new double[size];
+			start = new int[size];
+			end = new int[size];
+		}
+
+		void set(int i, double minX, double minY, double maxX, double maxY, int start, int end) {
+			this.minX[i] = minX;
+			this.minY[i] = minY;
+			this.maxX[i] = maxX;
+			this.maxY[i] = maxY;
+			this.start[i] = start;
+			this.end[i] = end;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * ByteRaster.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.capturepane.capture;
+
+/**
+ * an 8-bit raster stored in a single flat array with a row stride, used for gray values
+ * Daniel Huson, 10.2026
+ */
+public final class ByteRaster {
+	private final int width;
+	private final int height;
+	private final int stride;
+	private final byte[] data;
+
+	/**
+	 * constructs a raster with all values 0
+	 *
+	 * @param width  width in pixels
+	 * @param height height in pixels
+	 */
+	public ByteRaster(int width, int height) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid raster size: " + width + "x" + height);
+		this.width = width;
+		this.height = height;
+		this.stride = width;
+		this.data = new byte[stride * height];
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * the distance between the starts of two consecutive rows in the backing array
+	 */
+	public int getStride() {
+		return stride;
+	}
+
+	/**
+	 * the backing array, row y starts at y*stride
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	public int index(int x, int y) {
+		return y * stride + x;
+	}
+
+	/**
+	 * gets the unsigned value 0-255 at the given pixel
+	 */
+	public int get(int x, int y) {
+		return data[y * stride + x] & 0xFF;
+	}
+
+	public void set(int x, int y, int value) {
+		data[y * stride + x] = (byte) value;
+	}
+
+	/**
+	 * memory used by the backing array, in bytes
+	 */
+	public long memoryBytes() {
+		return data.length;
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * CaptureMetrics.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package phylosketch.capturepane.capture;
+
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * measurements of the phases of a capture: wall time, CPU time and allocated bytes, the number of elements going in and
+ * coming out, and the memory of the rasters held.
+ * CPU time and allocations are those of the thread that runs a phase. Work that a phase hands to the common fork-join pool,
+ * as thresholding and thinning do for large images, only shows in the wall time.
+ * Phases are published using the executor given to the constructor, e.g. Platform::runLater, so that the list can be
+ * observed by the user interface.
+ * Daniel Huson, 10.2026
+ */
+public class CaptureMetrics {
+	/**
+	 * measurements of a single phase
+	 *
+	 * @param name           name of the phase
+	 * @param wallNanos      elapsed time
+	 * @param cpuNanos       CPU time of the thread that ran the phase, or -1, if not supported
+	 * @param allocatedBytes bytes allocated by the thread that ran the phase, or -1, if not supported
+	 * @param inputCount     number of elements going in, e.g. pixels, segments or words
+	 * @param outputCount    number of elements coming out
+	 * @param rasterBytes    memory of the rasters held at the end of the phase, inputs and outputs
+	 */
+	public record Phase(String name, long wallNanos, long cpuNanos, long allocatedBytes, long inputCount, long outputCount,
+						long rasterBytes) {
+	}
+
+	private static final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	private static final com.sun.management.ThreadMXBean allocationBean = (threadBean instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported() ? bean : null);
+
+	private final Executor updater;
+	private final ObservableList<Phase> phases = FXCollections.observableArrayList();
+	private final SimpleLongProperty peakRasterBytes = new SimpleLongProperty(this, "peakRasterBytes", 0);
+
+	/**
+	 * constructor
+	 *
+	 * @param updater runs all modifications of the phases, use Runnable::run when the metrics are not observed
+	 */
+	public CaptureMetrics(Executor updater) {
+		this.updater = updater;
+		if (allocationBean != null && !allocationBean.isThreadAllocatedMemoryEnabled())
+			allocationBean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/**
+	 * starts measuring a phase. The phase must be stopped on the same thread
+	 *
+	 * @param name       the name of the phase
+	 * @param inputCount number of elements going in
+	 * @return the running measurement
+	 */
+	public Measurement start(String name, long inputCount) {
+		return new Measurement(name, inputCount);
+	}
+
+	/**
+	 * a running measurement
+	 */
+	public final class Measurement {
+		private final String name;
+		private final long inputCount;
+		private final long wallStart;
+		private final long cpuStart;
+		private final long allocatedStart;
+
+		private Measurement(String name, long inputCount) {
+			this.name = name;
+			this.inputCount = inputCount;
+			this.allocatedStart = getCurrentThreadAllocatedBytes();
+			this.cpuStart = getCurrentThreadCpuTime();
+			this.wallStart = System.nanoTime();
+		}
+
+		/**
+		 * stops measuring and records the phase
+		 *
+		 * @param outputCount number of elements coming out
+		 * @param rasterBytes memory of the rasters held at the end of the phase
+		 */
+		public void stop(long outputCount, long rasterBytes) {
+			var wall = System.nanoTime() - wallStart;
+			var cpu = (cpuStart >= 0 ? getCurrentThreadCpuTime() - cpuStart : -1);
+			var allocated = (allocatedStart >= 0 ? getCurrentThreadAllocatedBytes() - allocatedStart : -1);
+			add(new Phase(name, wall, cpu, allocated, inputCount, outputCount, rasterBytes));
+		}
+	}
+
+	private void add(Phase phase) {
+		updater.execute(() -> {
+			synchronized (phases) {
+				phases.add(phase);
+				if (phase.rasterBytes() > peakRasterBytes.get())
+					peakRasterBytes.set(phase.rasterBytes());
+			}
+		});
+	}
+
+	/**
+	 * removes all phases
+	 */
+	public void clear() {
+		updater.execute(() -> {
+			synchronized (phases) {
+				phases.clear();
+				peakRasterBytes.set(0);
+			}
+		});
+	}
+
+	/**
+	 * the measured phases, in the order in which they ended
+	 */
+	public ObservableList<Phase> getPhases() {
+		return phases;
+	}
+
+	/**
+	 * the largest memory of rasters held at the end of any phase
+	 */
+	public ReadOnlyLongProperty peakRasterBytesProperty() {
+		return peakRasterBytes;
+	}
+
+	public long getPeakRasterBytes() {
+		return peakRasterBytes.get();
+	}
+
+	/**
+	 * the phases as a table, one line per phase, for display
+	 */
+	public String toTable() {
+		List<Phase> list;
+		synchronized (phases) {
+			list = new ArrayList<>(phases);
+		}
+		var buf = new StringBuilder("%-16s %9s %9s %10s %10s %10s%n".formatted("Phase", "Wall(ms)", "CPU(ms)", "Alloc(MB)", "In", "Out"));
+		var total = 0L;
+		for (var phase : list) {
+			buf.append("%-16s %9.1f %9s %10s %10d %10d%n".formatted(phase.name(), toMillis(phase.wallNanos()),
+					phase.cpuNanos() >= 0 ? "%.1f".formatted(toMillis(phase.cpuNanos())) : "-",
+					phase.allocatedBytes() >= 0 ? "%.1f".formatted(toMegaBytes(phase.allocatedBytes())) : "-",
+					phase.inputCount(), phase.outputCount()));
+			total += phase.wallNanos();
+		}
+		buf.append("%-16s %9.1f%n".formatted("Total", toMillis(total)));
+		buf.append("Peak raster memory: %.1f MB".formatted(toMegaBytes(getPeakRasterBytes())));
+		return buf.toString();
+	}
+
+	/**
+	 * the phases as a JSON object
+	 */
+	public String toJson() {
+		List<Phase> list;
+		synchronized (phases) {
+			list = new ArrayList<>(phases);
+		}
+		var buf = new StringBuilder("{\"phases\":[");
+		var first = true;
+		for (var phase : list) {
+			if (first)
+				first = false;
+			else
+				buf.append(",");
+			buf.append(String.format(Locale.ROOT, "{\"name\":%s,\"wall_ms\":%.3f,\"cpu_ms\":%.3f,\"allocated_bytes\":%d,\"input\":%d,\"output\":%d,\"raster_bytes\":%d}",
+					quote(phase.name()), toMillis(phase.wallNanos()), phase.cpuNanos() >= 0 ? toMillis(phase.cpuNanos()) : -1.0,
+					phase.allocatedBytes(), phase.inputCount(), phase.outputCount(), phase.rasterBytes()));
+		}
+		buf.append("],\"peak_raster_bytes\":").append(getPeakRasterBytes()).append("}");
+		return buf.toString();
+	}
+
+	/**
+	 * quotes a string for use in JSON
+	 */
+	public static String quote(String string) {
+		var buf = new StringBuilder("\"");
+		for (var ch : string.toCharArray()) {
+			switch (ch) {
+				case '"' -> buf.append("\\\"");
+				case '\\' -> buf.append("\\\\");
+				default -> {
+					if (ch < 0x20)
+						buf.append("\\u%04x".formatted((int) ch));
+					else
+						buf.append(ch);
+				}
+			}
+		}
+		return buf.append("\"").toString();
+	}
+
+	private static long getCurrentThreadCpuTime() {
+		return (threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : -1);
+	}
+
+	private static long getCurrentThreadAllocatedBytes() {
+		return (allocationBean != null ? allocationBean.getCurrentThreadAllocatedBytes() : -1);
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+
+	private static double toMegaBytes(long bytes) {
+		return bytes / (1024.0 * 1024.0);
+	}
+}
@@ -21,7 +21,6 @@
 package phylosketch.capturepane.capture;
 
 import jloda.util.CanceledException;
-import jloda.util.CollectionUtils;
 import jloda.util.progress.ProgressListener;
 
 import java.util.ArrayList;
@@ -29,79 +28,45 @@ import java.util.List;
 
 public class CapturePointsSegments {
 
-	public static void apply(ProgressListener progress, int[][] matrix, int minDistancePoints, List<Point> endPoints, List<Segment> segments) throws CanceledException {
+	/**
+	 * determines end and branch points, and the segments between them
+	 *
+	 * @param progress          progress listener
+	 * @param matrix            the skeleton, as computed by {@link Skeletonization#apply(BitRaster)}
+	 * @param minDistancePoints minimum distance between points, or 0
+	 * @param endPoints         will contain the end and branch points
+	 * @param segments          will contain the segments
+	 */
+	public static void apply(ProgressListener progress, BitRaster matrix, int minDistancePoints, List<Point> endPoints, List<Segment> segments) throws CanceledException {
 		endPoints.clear();
 		segments.clear();
 
-		Skeletonization.apply(matrix);
-
-		var points = detectEndPoints(matrix);
-		points.addAll(detectBranchPoints(matrix));
+		var junctionDetection = JunctionDetector.apply(matrix);
+		var points = junctionDetection.endPointList();
+		points.addAll(junctionDetection.junctionList());
 
 		if (minDistancePoints > 0)
 			points = ProcessingUtils.removeClosePoints(points, minDistancePoints);
 
-		var sorted = new ArrayList<>(ProcessingUtils.findPaths(progress, matrix, points));
+		var sorted = new ArrayList<>(SkeletonTracer.apply(progress, matrix, points));
 		sorted.sort((a, b) -> -Double.compare(a.first().distance(a.last()), b.first().distance(b.last())));
+		var segmentIndex = new SegmentIndex(3);
 		for (var segment : sorted) {
-			if (segments.stream().noneMatch(that -> that.contains(segment, 3)))
+			if (!segmentIndex.containsSuperSegment(segment)) {
 				segments.add(segment);
-		}
-
-		endPoints.addAll(points);
-	}
-
-
-	public static List<Point> detectEndPoints(int[][] matrix) {
-		int height = matrix.length;
-		int width = matrix[0].length;
-
-		var list = new ArrayList<Point>();
-
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				if (matrix[y][x] == 1) {
-					if (ProcessingUtils.neighborsValue(matrix, new Point(x, y), 1).size() == 1) {
-						// printNeighborhood(matrix, i, j,1);
-						list.add(new Point(x, y)); // Endpoint
-					}
-				}
+				segmentIndex.add(segment);
 			}
 		}
 
-		return list;
+		endPoints.addAll(points);
 	}
 
-	public static List<Point> detectBranchPoints(int[][] matrix) {
-		int height = matrix.length;
-		int width = matrix[0].length;
-
-		var list = new ArrayList<Point>();
 
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				for (var distance = 1; distance <= 4; distance++) {
-					if (matrix[y][x] == 1) {
-						var neighbors = ProcessingUtils.neighborsValue(matrix, new Point(x, y), distance);
-						if (countNonAdjacent(matrix, neighbors) >= 3) {
-							// printNeighborhood(matrix,x,y,2);
-							list.add(new Point(x, y));
-							break;
-						}
-					}
-				}
-			}
-		}
-		return list;
+	public static List<Point> detectEndPoints(BitRaster matrix) {
+		return JunctionDetector.apply(matrix).endPointList();
 	}
 
-	private static int countNonAdjacent(int[][] matrix, List<Point> points) {
-		var count = 0;
-		for (var p : points) {
-			var neighbors = ProcessingUtils.neighborsValue(matrix, p, 1);
-			if (!CollectionUtils.intersects(points, neighbors))
-				count++;
-		}
-		return count;
+	public static List<Point> detectBranchPoints(BitRaster matrix) {
+		return JunctionDetector.apply(matrix).junctionList();
 	}
 }
@@ -21,16 +21,19 @@
 package phylosketch.capturepane.capture;
 
 import javafx.application.Platform;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.ReadOnlyIntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.*;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.image.Image;
-import javafx.scene.paint.Color;
 import jloda.fx.util.AService;
+import jloda.util.CanceledException;
+import phylosketch.ocr.ArgbRaster;
 import phylosketch.ocr.OcrWord;
+import phylosketch.ocr.utils.FXRasters;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
 import java.util.function.Consumer;
 
 /**
@@ -46,18 +49,46 @@ public class CaptureService extends AService<Boolean> {
 	public static final int DUSTED = 4;
 	public static final int PHYLOGENY = 5;
 
+	/**
+	 * images whose larger dimension is at least this are previewed at lower resolution before the full capture
+	 */
+	public static final int PREVIEW_MIN_DIMENSION = 2500;
+	/**
+	 * approximate larger dimension of the downscaled preview
+	 */
+	public static final int PREVIEW_DIMENSION = 1000;
+
 	private final Parameters parameters = new Parameters();
+	private final CaptureMetrics metrics = new CaptureMetrics(Platform::runLater);
 
 	private Image inputImage;
-	private Image skeletonImage;
-	private Image greyScaleImage;
+	private Rectangle2D region;
+	private ArgbRaster skeletonImage;
+	private ArgbRaster greyScaleImage;
 
 	private final ArrayList<OcrWord> allWords = new ArrayList<>();
+	// the recognizer that produced allWords, part of the fingerprints of the stages that use them
+	private String allWordsRecognizer = "";
 	private final ArrayList<OcrWord> words = new ArrayList<>();
 
 	private final ArrayList<Point> endPoints = new ArrayList<>();
 	private final ArrayList<Segment> segments = new ArrayList<>();
 
+	private static final ExecutorService ocrExecutor = Executors.newSingleThreadExecutor(r -> {
+		var thread = new Thread(r, "OCR");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// memoized results of the stages, cleared when the input image changes
+	private final PhaseMemo<ImageUtils.Conversion> conversionMemo = new PhaseMemo<>();
+	private final PhaseMemo<CaptureStages.Segments> segmentsMemo = new PhaseMemo<>();
+	private final PhaseMemo<List<OcrWord>> rawWordsMemo = new PhaseMemo<>();
+	private final PhaseMemo<List<OcrWord>> wordsMemo = new PhaseMemo<>();
+	private final PhaseMemo<List<Segment>> dustedMemo = new PhaseMemo<>();
+
+	private final ObjectProperty<List<Segment>> previewSegments = new SimpleObjectProperty<>(this, "previewSegments");
+
 	private final IntegerProperty phase = new SimpleIntegerProperty(this, "status", NONE);
 	private final IntegerProperty goal = new SimpleIntegerProperty(this, "goal", NONE);
 
@@ -66,6 +97,7 @@ public class CaptureService extends AService<Boolean> {
 	 */
 	public CaptureService(Consumer<Throwable> exceptionConsumer) {
 		setOnFailed(e -> {
+			previewSegments.set(null);
 			exceptionConsumer.accept(getException());
 		});
 
@@ -74,6 +106,7 @@ public class CaptureService extends AService<Boolean> {
 				return false;
 
 			getProgressListener().setTasks("Capture", "OCR");
+			metrics.clear();
 
 			var theStatus = getPhase();
 
@@ -90,51 +123,92 @@ public class CaptureService extends AService<Boolean> {
 				Platform.runLater(this::clear);
 			}
 
-			if (getGoal() >= SEGMENTS && theStatus < SEGMENTS) {
-				var matrix = ImageUtils.convertToBinaryArray(getInputImage());
+			// stages: conversion -> (segments || OCR) -> words -> dusted. OCR only needs the gray scale image,
+			// so it runs on its own executor while the segments are extracted and is joined before filtering words.
+			// The result of each stage is memoized with a fingerprint of the parameters it depends on, so that a
+			// re-run after changing parameters only recomputes the stages affected by the change
+			Future<List<OcrWord>> ocrFuture = null;
+			try {
+				ImageUtils.Conversion conversion = null;
+				if (getGoal() >= SEGMENTS && theStatus < SEGMENTS) {
+					// single pass over the pixels, also producing the gray scale image for OCR, if needed later
+					conversion = getConversion(getGoal() >= WORDS);
+					greyScaleImage = conversion.grayScale();
+				}
 
-				if (true) {
-					if (ImageUtils.tooMuchBlack(matrix, 0.30)) {
-						throw new RuntimeException("Image has too much foreground");
+				List<OcrWord> ocrWords = null;
+				String recognizer = null;
+				if (getGoal() >= WORDS && theStatus < WORDS) {
+					// keyed by the recognizer, so that words are recomputed, or taken from the OCR cache, after its settings change
+					recognizer = OCR.getOCRService().recognizer();
+					ocrWords = rawWordsMemo.get(recognizer);
+					if (greyScaleImage == null) // single conversion, also used for the gray scale image kept below
+						greyScaleImage = getConversion(true).grayScale();
+					if (ocrWords == null) {
+						var grayImage = greyScaleImage;
+						ocrFuture = ocrExecutor.submit(() -> {
+							var measurement = metrics.start("OCR", (long) grayImage.getWidth() * grayImage.getHeight());
+							var result = OCR.getWords(grayImage);
+							measurement.stop(result.size(), grayImage.memoryBytes());
+							return result;
+						});
 					}
 				}
-				Skeletonization.apply(matrix);
 
-				if (true)
-					DotConnector.apply(matrix);
-
-				skeletonImage = ImageUtils.convertToImage(matrix, Color.HOTPINK);
-
-				CapturePointsSegments.apply(getProgressListener(), matrix, 0, endPoints, segments);
-				theStatus = SEGMENTS;
-				updatePhase(theStatus);
-			}
-
-			if (getGoal() >= WORDS && theStatus < WORDS) {
-				greyScaleImage = ImageUtils.convertToGrayScale(getInputImage());
+				if (getGoal() >= SEGMENTS && theStatus < SEGMENTS) {
+					getProgressListener().setTasks("Capture", "Segments");
+					var fingerprint = parameters.thresholdFingerprint();
+					var result = segmentsMemo.get(fingerprint);
+					if (result == null) {
+						if (parameters.isPreviewLargeImages())
+							computePreview(conversion);
+						result = segmentsMemo.set(fingerprint, CaptureStages.computeSegments(getProgressListener(), conversion, parameters, true, metrics));
+					}
+					skeletonImage = result.skeletonImage();
+					endPoints.clear();
+					endPoints.addAll(result.endPoints());
+					segments.clear();
+					segments.addAll(result.segments());
+					theStatus = SEGMENTS;
+					updatePhase(theStatus);
+				}
 
-				allWords.clear();
-				allWords.addAll(OCR.getWords(greyScaleImage));
-				words.clear();
-				words.addAll(CaptureWords.joinConsecutiveWords(CaptureWords.filter(allWords, parameters.getMinWordConfidence(), parameters.getMinWordLength(), parameters.getMinTextHeight(),
-						parameters.getMaxTextHeight()), parameters.isMustStartAlphaNumeric(), parameters.isMustEndAlphaNumeric(), parameters.isMustContainLetter()));
-				theStatus = WORDS;
-				updatePhase(theStatus);
+				if (getGoal() >= WORDS && theStatus < WORDS) {
+					if (ocrFuture != null) {
+						getProgressListener().setTasks("Capture", "OCR");
+						ocrWords = rawWordsMemo.set(recognizer, List.copyOf(awaitStage(ocrFuture)));
+						ocrFuture = null;
+					}
+					allWords.clear();
+					allWords.addAll(ocrWords);
+					allWordsRecognizer = recognizer;
+
+					var fingerprint = List.of(recognizer, parameters.wordFilterFingerprint());
+					var filtered = wordsMemo.get(fingerprint);
+					if (filtered == null) {
+						var measurement = metrics.start("Words", allWords.size());
+						filtered = wordsMemo.set(fingerprint, CaptureStages.filterWords(allWords, parameters));
+						measurement.stop(filtered.size(), 0);
+					}
+					words.clear();
+					words.addAll(filtered);
+					theStatus = WORDS;
+					updatePhase(theStatus);
+				}
+			} finally {
+				// a failed or canceled stage cancels the concurrent one
+				if (ocrFuture != null)
+					ocrFuture.cancel(true);
 			}
 
 			if (getGoal() >= DUSTED && theStatus < DUSTED) {
 				getProgressListener().setTasks("Capture", "Dust removal");
-				var dustedSegments = DustRemoval.apply(getProgressListener(), segments, parameters.getMaxDustDistance(), parameters.getMinDustExtent());
-				System.err.println("Dusting by size: " + segments.size() + " -> " + dustedSegments.size());
-
-				// keep every segment that are not covered by a word box
+				var fingerprint = List.of(allWordsRecognizer, parameters.thresholdFingerprint(), parameters.dustFingerprint());
+				var dusted = dustedMemo.get(fingerprint);
+				if (dusted == null)
+					dusted = dustedMemo.set(fingerprint, CaptureStages.removeDust(getProgressListener(), segments, allWords, parameters, metrics));
 				segments.clear();
-				for (var segment : dustedSegments) {
-					var bbox = shrink(segment.computeBoundingBox(), 10);
-					if (allWords.stream().noneMatch(word -> word.boundingBox().contains(bbox)))
-						segments.add(segment);
-				}
-				System.err.println("Dusting by words: " + dustedSegments.size() + " -> " + segments.size());
+				segments.addAll(dusted);
 				theStatus = DUSTED;
 				updatePhase(theStatus);
 			}
@@ -143,10 +217,92 @@ public class CaptureService extends AService<Boolean> {
 				theStatus = PHYLOGENY;
 				updatePhase(theStatus);
 			}
+			Platform.runLater(() -> previewSegments.set(null)); // replaced by the final segments
 			return true;
 		});
 	}
 
+	/**
+	 * gets the luminance and histogram of the input image, and the gray scale image, if requested
+	 */
+	private ImageUtils.Conversion getConversion(boolean computeGrayScaleImage) {
+		var conversion = conversionMemo.get(Boolean.TRUE);
+		if (conversion == null && !computeGrayScaleImage)
+			conversion = conversionMemo.get(Boolean.FALSE);
+		if (conversion == null) {
+			var pixels = (region != null ? region.getWidth() * region.getHeight() : inputImage.getWidth() * inputImage.getHeight());
+			var measurement = metrics.start("Convert", (long) pixels); // includes copying the pixels from the input image
+			var image = getCaptureImage();
+			conversion = conversionMemo.set(computeGrayScaleImage, ImageUtils.convert(image, computeGrayScaleImage));
+			var grayScaleBytes = (conversion.grayScale() != null ? conversion.grayScale().memoryBytes() : 0);
+			measurement.stop((long) pixels, image.memoryBytes() + conversion.luminance().memoryBytes() + grayScaleBytes);
+		}
+		return conversion;
+	}
+
+	/**
+	 * for a large image, quickly computes segments on a downscaled copy and publishes them as preview, while the segments
+	 * are computed at full resolution
+	 */
+	private void computePreview(ImageUtils.Conversion conversion) throws CanceledException {
+		var luminance = conversion.luminance();
+		var maxDimension = Math.max(luminance.getWidth(), luminance.getHeight());
+		if (maxDimension < PREVIEW_MIN_DIMENSION)
+			return;
+		var factor = (maxDimension + PREVIEW_DIMENSION - 1) / PREVIEW_DIMENSION;
+
+		getProgressListener().setTasks("Capture", "Preview");
+		var measurement = metrics.start("Preview", (long) luminance.getWidth() * luminance.getHeight());
+		var small = ImageUtils.downscale(conversion, factor);
+		// same filters as at full resolution, scaled to the preview, so that the preview shows what the capture will find
+		var filtered = ImageFilters.preprocess(small.luminance(), parameters, factor);
+		var histogram = (filtered == small.luminance() ? small.histogram() : Thresholding.computeHistogram(filtered));
+		var matrix = Thresholding.apply(filtered, histogram, parameters.getThresholdMethod(),
+				Math.max(3, parameters.getThresholdWindow() / factor), parameters.getThresholdSensitivity());
+		if (ImageUtils.tooMuchBlack(matrix, 0.30))
+			return;
+		Skeletonization.apply(matrix);
+		getProgressListener().checkForCancel();
+
+		var endPoints = new ArrayList<Point>();
+		var segments = new ArrayList<Segment>();
+		CapturePointsSegments.apply(getProgressListener(), matrix, 0, endPoints, segments);
+
+		// map back to full resolution, placing each point in the center of its block
+		var scaled = new ArrayList<Segment>(segments.size());
+		for (var segment : segments) {
+			var copy = new Segment();
+			for (var point : segment.points())
+				copy.points().add(new Point(point.x() * factor + factor / 2, point.y() * factor + factor / 2));
+			scaled.add(copy);
+		}
+		var list = List.copyOf(scaled);
+		measurement.stop(list.size(), small.luminance().memoryBytes() + matrix.memoryBytes());
+		Platform.runLater(() -> previewSegments.set(list));
+		getProgressListener().setTasks("Capture", "Segments");
+	}
+
+	/**
+	 * waits for a concurrently running stage, while checking whether the capture was canceled
+	 *
+	 * @param future the stage
+	 * @return its result
+	 */
+	private <T> T awaitStage(Future<T> future) throws Exception {
+		while (true) {
+			getProgressListener().checkForCancel();
+			try {
+				return future.get(100, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException ignored) {
+			} catch (ExecutionException ex) {
+				if (ex.getCause() instanceof Exception exception)
+					throw exception;
+				else
+					throw ex;
+			}
+		}
+	}
+
 	public static Rectangle2D shrink(Rectangle2D rect, int inset) {
 		if (rect == null) {
 			throw new IllegalArgumentException("Rectangle cannot be null");
@@ -168,17 +324,39 @@ public class CaptureService extends AService<Boolean> {
 
 	public void clear() {
 		inputImage = null;
+		clearMemos();
 		clearData();
 	}
 
+	/**
+	 * clears the data of all phases, but keeps the memoized results, so that a re-run for the same image only
+	 * recomputes phases whose parameters have changed
+	 */
 	public void clearData() {
 		updatePhase(getInputImage() != null ? IMAGE : NONE);
+		Platform.runLater(() -> previewSegments.set(null));
 		greyScaleImage = null;
 		words.clear();
 		endPoints.clear();
 		segments.clear();
 	}
 
+	private void clearMemos() {
+		conversionMemo.clear();
+		segmentsMemo.clear();
+		rawWordsMemo.clear();
+		wordsMemo.clear();
+		dustedMemo.clear();
+	}
+
+	/**
+	 * segments computed at low resolution, shown while capture of a large image is running, in the coordinates of the
+	 * captured image. Set to null when the data is cleared
+	 */
+	public ReadOnlyObjectProperty<List<Segment>> previewSegmentsProperty() {
+		return previewSegments;
+	}
+
 	public int getPhase() {
 		return phase.get();
 	}
@@ -198,9 +376,54 @@ public class CaptureService extends AService<Boolean> {
 	 */
 	public void setInputImage(Image image) {
 		inputImage = image;
+		clearMemos();
 		clearData();
 	}
 
+	/**
+	 * set the region of the input image to capture from. All coordinates of captured segments, points and words are
+	 * relative to the top-left corner of the region
+	 *
+	 * @param region the region in image coordinates, or null, to capture from the whole image
+	 */
+	public void setRegion(Rectangle2D region) {
+		if (region != null && inputImage != null) {
+			var minX = Math.max(0, (int) Math.floor(region.getMinX()));
+			var minY = Math.max(0, (int) Math.floor(region.getMinY()));
+			var maxX = Math.min((int) inputImage.getWidth(), (int) Math.ceil(region.getMaxX()));
+			var maxY = Math.min((int) inputImage.getHeight(), (int) Math.ceil(region.getMaxY()));
+			if (maxX <= minX || maxY <= minY || (minX == 0 && minY == 0 && maxX == (int) inputImage.getWidth() && maxY == (int) inputImage.getHeight()))
+				region = null;
+			else
+				region = new Rectangle2D(minX, minY, maxX - minX, maxY - minY);
+		}
+		if (!Objects.equals(region, this.region)) {
+			this.region = region;
+			clearMemos();
+			clearData();
+		}
+	}
+
+	/**
+	 * get the region of the input image to capture from
+	 *
+	 * @return region in image coordinates, or null, if capturing from the whole image
+	 */
+	public Rectangle2D getRegion() {
+		return region;
+	}
+
+	/**
+	 * copies the pixels that are captured from, namely the region of the input image, if set, otherwise the whole input image.
+	 * The copy is not kept, as the stages only need it once
+	 */
+	private ArgbRaster getCaptureImage() {
+		if (region == null)
+			return FXRasters.fromImage(inputImage);
+		else
+			return FXRasters.fromImage(inputImage, (int) region.getMinX(), (int) region.getMinY(), (int) region.getWidth(), (int) region.getHeight());
+	}
+
 
 	public Image getInputImage() {
 		return inputImage;
@@ -211,12 +434,17 @@ public class CaptureService extends AService<Boolean> {
 	 *
 	 * @return gray scale image
 	 */
-	public Image getGreyScaleImage() {
+	public ArgbRaster getGreyScaleImage() {
 		return greyScaleImage;
 	}
 
+	/**
+	 * get the skeleton drawn onto a transparent image, for display
+	 *
+	 * @return skeleton image, or null
+	 */
 	public Image getSkeletonImage() {
-		return skeletonImage;
+		return skeletonImage == null ? null : FXRasters.toImage(skeletonImage);
 	}
 
 	/**
@@ -274,4 +502,11 @@ public class CaptureService extends AService<Boolean> {
 	public Parameters getParameters() {
 		return parameters;
 	}
+
+	/**
+	 * measurements of the phases computed by the last run, phases whose results were memoized are not listed
+	 */
+	public CaptureMetrics getMetrics() {
+		return metrics;
+	}
 }
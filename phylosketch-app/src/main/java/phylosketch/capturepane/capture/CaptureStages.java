@@ -0,0 +1,140 @@
+/*
+ * CaptureStages.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.capturepane.capture;
+
+import jloda.util.CanceledException;
+import jloda.util.progress.ProgressListener;
+import phylosketch.ocr.ArgbRaster;
+import phylosketch.ocr.OcrWord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * the compute stages of capture, used by {@link CaptureService} and by batch capture.
+ * None of these touch the JavaFX application thread, so they can run on any thread, also without a display
+ * Daniel Huson, 10.2026
+ */
+public class CaptureStages {
+	/**
+	 * color of the skeleton image, hot pink
+	 */
+	public static final int SKELETON_ARGB = 0xFFFF69B4;
+
+	/**
+	 * result of the segments stage
+	 *
+	 * @param skeletonImage the skeleton drawn onto a transparent image, or null, if not requested
+	 * @param endPoints     end and branch points
+	 * @param segments      segments between them
+	 */
+	public record Segments(ArgbRaster skeletonImage, List<Point> endPoints, List<Segment> segments) {
+	}
+
+	/**
+	 * computes the skeleton of the binary mask and the segments and end points in it
+	 *
+	 * @param progress            progress listener
+	 * @param conversion          the converted image
+	 * @param parameters          the parameters
+	 * @param createSkeletonImage also draw the skeleton as an image?
+	 * @param metrics             records thresholding, thinning, dot connection and tracing
+	 * @return the segments
+	 */
+	public static Segments computeSegments(ProgressListener progress, ImageUtils.Conversion conversion, Parameters parameters, boolean createSkeletonImage, CaptureMetrics metrics) throws CanceledException {
+		var luminance = conversion.luminance();
+		var pixels = (long) luminance.getWidth() * luminance.getHeight();
+
+		var measurement = metrics.start("Threshold", pixels);
+		var matrix = ImageUtils.convertToBinaryRaster(conversion, parameters);
+		var foreground = matrix.cardinality();
+		measurement.stop(foreground, luminance.memoryBytes() + matrix.memoryBytes());
+
+		if (true) {
+			if (ImageUtils.tooMuchBlack(matrix, 0.30)) {
+				throw new RuntimeException("Image has too much foreground");
+			}
+		}
+		measurement = metrics.start("Thinning", foreground);
+		Skeletonization.apply(matrix);
+		foreground = matrix.cardinality();
+		measurement.stop(foreground, luminance.memoryBytes() + matrix.memoryBytes());
+		progress.checkForCancel();
+
+		measurement = metrics.start("Dots", foreground);
+		var connectedDots = DotConnector.apply(matrix);
+
+		var skeletonImage = (createSkeletonImage ? ImageUtils.convertToImage(matrix, SKELETON_ARGB) : null);
+
+		if (connectedDots) // lines drawn through dots need thinning, too
+			Skeletonization.apply(matrix);
+		var rasterBytes = luminance.memoryBytes() + matrix.memoryBytes() + (skeletonImage != null ? skeletonImage.memoryBytes() : 0);
+		foreground = (connectedDots ? matrix.cardinality() : foreground);
+		measurement.stop(foreground, rasterBytes);
+
+		measurement = metrics.start("Tracing", foreground);
+		var endPoints = new ArrayList<Point>();
+		var segments = new ArrayList<Segment>();
+		CapturePointsSegments.apply(progress, matrix, 0, endPoints, segments);
+		measurement.stop(segments.size(), rasterBytes);
+		return new Segments(skeletonImage, List.copyOf(endPoints), List.copyOf(segments));
+	}
+
+	/**
+	 * filters the recognized words and joins consecutive ones
+	 *
+	 * @param words      all recognized words
+	 * @param parameters the parameters
+	 * @return the words to use as labels
+	 */
+	public static List<OcrWord> filterWords(List<OcrWord> words, Parameters parameters) {
+		return List.copyOf(CaptureWords.joinConsecutiveWords(CaptureWords.filter(words, parameters.getMinWordConfidence(), parameters.getMinWordLength(), parameters.getMinTextHeight(),
+				parameters.getMaxTextHeight()), parameters.isMustStartAlphaNumeric(), parameters.isMustEndAlphaNumeric(), parameters.isMustContainLetter()));
+	}
+
+	/**
+	 * removes small clusters of segments and segments covered by word boxes
+	 *
+	 * @param progress   progress listener
+	 * @param segments   the segments
+	 * @param allWords   all recognized words
+	 * @param parameters the parameters
+	 * @param metrics    records dust removal by size and by words
+	 * @return the remaining segments
+	 */
+	public static List<Segment> removeDust(ProgressListener progress, ArrayList<Segment> segments, List<OcrWord> allWords, Parameters parameters, CaptureMetrics metrics) throws CanceledException {
+		var measurement = metrics.start("Dust by size", segments.size());
+		var dustedSegments = DustRemoval.apply(progress, segments, parameters.getMaxDustDistance(), parameters.getMinDustExtent());
+		measurement.stop(dustedSegments.size(), 0);
+
+		// keep every segment that are not covered by a word box
+		measurement = metrics.start("Dust by words", dustedSegments.size());
+		var wordIndex = new WordBoxIndex(allWords);
+		var result = new ArrayList<Segment>();
+		for (var segment : dustedSegments) {
+			var bbox = CaptureService.shrink(segment.computeBoundingBox(), 10);
+			if (!wordIndex.anyContains(bbox))
+				result.add(segment);
+		}
+		measurement.stop(result.size(), 0);
+		return List.copyOf(result);
+	}
+}
@@ -20,130 +20,212 @@
 
 package phylosketch.capturepane.capture;
 
-import java.awt.Point;
-import java.util.ArrayList;
-import java.util.List;
-
+/**
+ * reconstructs dotted and dashed lines by chaining isolated foreground pixels and drawing lines through the chains
+ * <p>
+ * Dots are stored packed as y*width+x, in row-major order, and bucketed into a uniform grid whose cells have the size
+ * of the maximum distance between consecutive dots of a chain, so that the next dot of a chain is found among the
+ * dots in the 3x3 cells around the last one. Chain membership is recorded in a bitset indexed by dot.
+ * Daniel Huson, 10.2026
+ */
 public class DotConnector {
 
-	private final int[][] image;
+	private final BitRaster image;
 	private final int width;
 	private final int height;
-	private final boolean[][] visited;
 
 	private final int minChainLength = 8;
 	private final int distanceThreshold = 10;
 
-	public static void apply(int[][] image) {
-		(new DotConnector(image)).connectDots();
+	// dots, packed as y*width+x, in row-major order
+	private int[] dots;
+	// the dots of grid cell c are dots[cellDots[cellStart[c]]] ... dots[cellDots[cellStart[c+1]-1]], in row-major order
+	private int[] cellStart;
+	private int[] cellDots;
+	private int gridColumns;
+	private int gridRows;
+	// visited dots, indexed by position in dots
+	private long[] visited;
+
+	/**
+	 * connects chains of dots by drawing lines through them
+	 *
+	 * @param image the image
+	 * @return true, if any lines were drawn
+	 */
+	public static boolean apply(BitRaster image) {
+		return (new DotConnector(image)).connectDots() > 0;
 	}
 
-	public DotConnector(int[][] image) {
+	public DotConnector(BitRaster image) {
 		this.image = image;
-		this.height = image.length;
-		this.width = image[0].length;
-		this.visited = new boolean[height][width];
+		this.height = image.getHeight();
+		this.width = image.getWidth();
 	}
 
-	public void connectDots() {
-		List<Point> dots = findDots();
+	/**
+	 * connects dots
+	 *
+	 * @return the number of chains drawn
+	 */
+	public int connectDots() {
+		dots = findDots();
+		buildGrid();
+		visited = new long[(dots.length + 63) >>> 6];
+		var count = 0;
 
 		// Try to grow chains starting from each unvisited dot
-		for (Point start : dots) {
-			if (visited[start.y][start.x]) continue;
-			List<Point> chain = growChain(start, dots);
+		var chain = new IntArrayList();
+		for (var start = 0; start < dots.length; start++) {
+			if (isVisited(start)) continue;
+			growChain(start, chain);
 
 			if (chain.size() >= minChainLength) {
 				drawLineThrough(chain);
+				count++;
 			}
 		}
+		return count;
 	}
 
-	private List<Point> findDots() {
-		List<Point> dots = new ArrayList<>();
-		for (int y = 1; y < height - 1; y++) {
-			for (int x = 1; x < width - 1; x++) {
-				if (image[y][x] == 1 && isIsolated(x, y)) {
-					dots.add(new Point(x, y));
+	/**
+	 * finds all interior foreground pixels with at most two foreground neighbours
+	 */
+	private int[] findDots() {
+		var list = new IntArrayList();
+		var words = image.getWords();
+		var wordsPerRow = image.getWordsPerRow();
+		for (var y = 1; y < height - 1; y++) {
+			for (var w = 0; w < wordsPerRow; w++) {
+				var word = words[y * wordsPerRow + w];
+				while (word != 0) {
+					var x = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					// Check if the black pixel is mostly surrounded by white (i.e. a dot)
+					if (x >= 1 && x < width - 1 && Integer.bitCount(image.neighborCode(x, y)) <= 2)
+						list.add(y * width + x);
 				}
 			}
 		}
-		return dots;
+		return list.toArray();
 	}
 
-	private boolean isIsolated(int x, int y) {
-		// Check if the black pixel is mostly surrounded by white (i.e. a dot)
-		int blackCount = 0;
-		for (int dy = -1; dy <= 1; dy++) {
-			for (int dx = -1; dx <= 1; dx++) {
-				if (dx == 0 && dy == 0) continue;
-				if (image[y + dy][x + dx] == 1) blackCount++;
-			}
+	/**
+	 * buckets the dots into grid cells of size distanceThreshold, by counting sort, which keeps them in row-major order
+	 */
+	private void buildGrid() {
+		gridColumns = width / distanceThreshold + 1;
+		gridRows = height / distanceThreshold + 1;
+		cellStart = new int[gridColumns * gridRows + 1];
+		for (var dot : dots)
+			cellStart[cellOf(dot) + 1]++;
+		for (var c = 0; c < gridColumns * gridRows; c++)
+			cellStart[c + 1] += cellStart[c];
+		cellDots = new int[dots.length];
+		var next = new int[gridColumns * gridRows];
+		for (var i = 0; i < dots.length; i++) {
+			var cell = cellOf(dots[i]);
+			cellDots[cellStart[cell] + next[cell]++] = i;
 		}
-		return blackCount <= 2;
 	}
 
-	private List<Point> growChain(Point start, List<Point> allDots) {
-		List<Point> chain = new ArrayList<>();
-		chain.add(start);
-		visited[start.y][start.x] = true;
+	private int cellOf(int dot) {
+		return (dot / width / distanceThreshold) * gridColumns + (dot % width) / distanceThreshold;
+	}
 
-		Point last = start;
+	/**
+	 * grows a chain from the given dot, always moving to the closest unvisited dot within distanceThreshold that continues
+	 * the direction of the chain. Ties are broken by row-major order
+	 *
+	 * @param start the index of the start dot
+	 * @param chain is cleared and receives the packed locations of the dots of the chain
+	 */
+	private void growChain(int start, IntArrayList chain) {
+		chain.clear();
+		chain.add(dots[start]);
+		setVisited(start);
+
+		var last = dots[start];
+		var maxDistanceSquared = distanceThreshold * distanceThreshold;
 
 		while (true) {
-			Point next = null;
-			double bestScore = Double.MAX_VALUE;
-
-			for (Point candidate : allDots) {
-				if (visited[candidate.y][candidate.x]) continue;
-
-				double d = distance(last, candidate);
-				if (d > distanceThreshold) continue;
-
-				if (!angleMatch(chain, candidate)) continue;
-
-				if (d < bestScore) {
-					next = candidate;
-					bestScore = d;
+			var lastX = last % width;
+			var lastY = last / width;
+			var cellX = lastX / distanceThreshold;
+			var cellY = lastY / distanceThreshold;
+
+			var next = -1;
+			var bestScore = Integer.MAX_VALUE;
+
+			for (var cy = Math.max(0, cellY - 1); cy <= Math.min(gridRows - 1, cellY + 1); cy++) {
+				for (var cx = Math.max(0, cellX - 1); cx <= Math.min(gridColumns - 1, cellX + 1); cx++) {
+					var cell = cy * gridColumns + cx;
+					for (var k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+						var candidate = cellDots[k];
+						if (isVisited(candidate)) continue;
+
+						var dx = dots[candidate] % width - lastX;
+						var dy = dots[candidate] / width - lastY;
+						var d = dx * dx + dy * dy;
+						if (d > maxDistanceSquared) continue;
+						if (d > bestScore || (d == bestScore && candidate > next)) continue;
+
+						if (!angleMatch(chain, dots[candidate])) continue;
+
+						next = candidate;
+						bestScore = d;
+					}
 				}
 			}
 
-			if (next == null) break;
+			if (next == -1) break;
 
-			chain.add(next);
-			visited[next.y][next.x] = true;
-			last = next;
+			chain.add(dots[next]);
+			setVisited(next);
+			last = dots[next];
 		}
-
-		return chain;
 	}
 
-	private boolean angleMatch(List<Point> chain, Point newPoint) {
+	/**
+	 * does the direction from the last dot of the chain to the new one deviate by less than ~22.5 degrees from the
+	 * direction of the last step of the chain?
+	 */
+	private boolean angleMatch(IntArrayList chain, int newPoint) {
 		if (chain.size() < 2) return true;
-		Point a = chain.get(chain.size() - 2);
-		Point b = chain.get(chain.size() - 1);
-		double angle1 = Math.atan2(b.y - a.y, b.x - a.x);
-		double angle2 = Math.atan2(newPoint.y - b.y, newPoint.x - b.x);
+		var a = chain.get(chain.size() - 2);
+		var b = chain.get(chain.size() - 1);
+		double angle1 = Math.atan2(b / width - a / width, b % width - a % width);
+		double angle2 = Math.atan2(newPoint / width - b / width, newPoint % width - b % width);
 		double diff = Math.abs(angle1 - angle2);
 		return diff < Math.PI / 8; // ~22.5 degrees
 	}
 
-	private void drawLineThrough(List<Point> chain) {
+	private boolean isVisited(int dot) {
+		return (visited[dot >>> 6] & (1L << dot)) != 0;
+	}
+
+	private void setVisited(int dot) {
+		visited[dot >>> 6] |= 1L << dot;
+	}
+
+	private void drawLineThrough(IntArrayList chain) {
 		for (int i = 0; i < chain.size() - 1; i++) {
 			drawLine(chain.get(i), chain.get(i + 1));
 		}
 	}
 
-	private void drawLine(Point a, Point b) {
-		int dx = Math.abs(b.x - a.x), dy = Math.abs(b.y - a.y);
-		int sx = Integer.compare(b.x, a.x);
-		int sy = Integer.compare(b.y, a.y);
+	private void drawLine(int a, int b) {
+		int ax = a % width, ay = a / width;
+		int bx = b % width, by = b / width;
+		int dx = Math.abs(bx - ax), dy = Math.abs(by - ay);
+		int sx = Integer.compare(bx, ax);
+		int sy = Integer.compare(by, ay);
 		int err = dx - dy;
 
-		int x = a.x, y = a.y;
+		int x = ax, y = ay;
 		while (true) {
-			image[y][x] = 1;
-			if (x == b.x && y == b.y) break;
+			image.set(x, y);
+			if (x == bx && y == by) break;
 			int e2 = 2 * err;
 			if (e2 > -dy) {
 				err -= dy;
@@ -156,12 +238,7 @@ public class DotConnector {
 		}
 	}
 
-	private double distance(Point a, Point b) {
-		int dx = a.x - b.x, dy = a.y - b.y;
-		return Math.sqrt(dx * dx + dy * dy);
-	}
-
-	public int[][] getImage() {
+	public BitRaster getImage() {
 		return image;
 	}
-}
\ No newline at end of file
+}
@@ -20,79 +20,119 @@
 
 package phylosketch.capturepane.capture;
 
-import jloda.util.BitSetUtils;
 import jloda.util.CanceledException;
-import jloda.util.CollectionUtils;
-import jloda.util.Pair;
 import jloda.util.progress.ProgressListener;
 
 import java.util.ArrayList;
-import java.util.BitSet;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.HashMap;
 
 /**
  * removes all the dust from the list of segments
+ * <p>
+ * Segments are clustered by single linkage: two segments are in the same cluster, if they are connected by a chain
+ * of segments in which consecutive ones have points at distance at most maxDistance.
+ * The points are bucketed into a grid whose cells have a diagonal of maxDistance, so all segments meeting in a cell
+ * are merged immediately and only points in nearby cells need to be compared. Clusters are maintained by union-find,
+ * together with their extents.
  * Daniel Huson, 1.2025
  */
 public class DustRemoval {
 
+	/**
+	 * removes dust
+	 *
+	 * @param progress    progress listener
+	 * @param segments    the segments
+	 * @param maxDistance maximum distance between segments of the same cluster
+	 * @param minExtent   clusters whose smaller side is shorter than this are removed, except for the largest cluster
+	 * @return the segments of all clusters that are kept, cluster by cluster, largest first
+	 */
 	public static ArrayList<Segment> apply(ProgressListener progress, ArrayList<Segment> segments, double maxDistance, double minExtent) throws CanceledException {
-		// determine all clusters of segments
-		progress.setMaximum(segments.size());
-		progress.setProgress(0);
-		var clusters = new LinkedList<ArrayList<Segment>>();
-		for (var segment : segments) {
-			var closeClusters = new BitSet();
-			for (int i = 0; i < clusters.size(); i++) {
-				var cluster = clusters.get(i);
-				if (close(segment, cluster, maxDistance)) {
-					closeClusters.set(i);
-				}
+		var clusters = new Clusters(segments);
+
+		// bucket all points into grid cells
+		var cellSize = Math.max(0.5, maxDistance / Math.sqrt(2));
+		var cells = new HashMap<Long, IntArrayList>();
+		var xs = new IntArrayList();
+		var ys = new IntArrayList();
+		var owner = new IntArrayList();
+		for (var s = 0; s < segments.size(); s++) {
+			for (var p : segments.get(s).points()) {
+				var index = xs.size();
+				xs.add(p.x());
+				ys.add(p.y());
+				owner.add(s);
+				cells.computeIfAbsent(key(cell(p.x(), cellSize), cell(p.y(), cellSize)), k -> new IntArrayList(8)).add(index);
 			}
-			if (closeClusters.isEmpty()) {
-				clusters.add(new ArrayList<>(List.of(segment)));
-			} else {
-				var newList = new ArrayList<Segment>();
-				newList.add(segment);
-				for (var i : BitSetUtils.members(closeClusters)) {
-					newList.addAll(clusters.get(i));
-				}
-				clusters.add(newList);
-				for (int i : CollectionUtils.reverse(BitSetUtils.asList(closeClusters))) {
-					clusters.remove(i);
-				}
+		}
+
+		// all points in a cell are within maxDistance of each other, so their segments belong to the same cluster
+		for (var list : cells.values()) {
+			for (var i = 1; i < list.size(); i++) {
+				clusters.union(owner.get(list.get(0)), owner.get(list.get(i)));
 			}
-			progress.incrementProgress();
 		}
 
-		progress.setMaximum(clusters.size());
+		// compare points in nearby cells, each pair of cells once
+		var range = (int) Math.ceil(maxDistance / cellSize);
+		var maxDistanceSquared = maxDistance * maxDistance;
+		progress.setMaximum(cells.size());
 		progress.setProgress(0);
-		var clustersSizes = new ArrayList<Pair<ArrayList<Segment>, Integer>>();
-		for (var cluster : clusters) {
-			clustersSizes.add(new Pair<>(cluster, computeMinExtent(cluster)));
+		for (var entry : cells.entrySet()) {
+			var cx = (int) (entry.getKey() >> 32);
+			var cy = (int) (long) entry.getKey();
+			var list = entry.getValue();
+			for (var dx = 0; dx <= range; dx++) {
+				for (var dy = (dx == 0 ? 1 : -range); dy <= range; dy++) {
+					var other = cells.get(key(cx + dx, cy + dy));
+					if (other == null || clusters.find(owner.get(list.get(0))) == clusters.find(owner.get(other.get(0))))
+						continue;
+					loop:
+					for (var i = 0; i < list.size(); i++) {
+						var a = list.get(i);
+						for (var j = 0; j < other.size(); j++) {
+							var b = other.get(j);
+							var ddx = (double) (xs.get(a) - xs.get(b));
+							var ddy = (double) (ys.get(a) - ys.get(b));
+							if (ddx * ddx + ddy * ddy <= maxDistanceSquared) {
+								clusters.union(owner.get(a), owner.get(b));
+								break loop; // all points of a cell are in the same cluster
+							}
+						}
+					}
+				}
+			}
 			progress.incrementProgress();
 		}
-		clustersSizes.sort((a, b) -> -Integer.compare(a.getSecond(), b.getSecond()));
+
+		// collect clusters in order of first appearance, segments in input order
+		var clusterOf = new HashMap<Integer, Integer>();
+		var clusterSegments = new ArrayList<ArrayList<Segment>>();
+		var clusterExtents = new ArrayList<Integer>();
+		for (var s = 0; s < segments.size(); s++) {
+			var root = clusters.find(s);
+			var c = clusterOf.computeIfAbsent(root, r -> {
+				clusterSegments.add(new ArrayList<>());
+				clusterExtents.add(clusters.minExtent(r));
+				return clusterSegments.size() - 1;
+			});
+			clusterSegments.get(c).add(segments.get(s));
+		}
+		var order = new ArrayList<Integer>();
+		for (var c = 0; c < clusterSegments.size(); c++)
+			order.add(c);
+		order.sort((a, b) -> -Integer.compare(clusterExtents.get(a), clusterExtents.get(b)));
 		progress.setProgress(-1);
 
 		var result = new ArrayList<Segment>();
-		for (var pair : clustersSizes) {
-			if (!result.isEmpty() && pair.getSecond() < minExtent)
+		for (var c : order) {
+			if (!result.isEmpty() && clusterExtents.get(c) < minExtent)
 				break;
-			result.addAll(pair.getFirst());
+			result.addAll(clusterSegments.get(c));
 		}
 		return result;
 	}
 
-	public static boolean close(Segment segment, List<Segment> list, double maxDistance) {
-		for (var other : list) {
-			if (segment.proximal(other, maxDistance))
-				return true;
-		}
-		return false;
-	}
-
 	public static int computeMinExtent(ArrayList<Segment> list) {
 		var minX = Integer.MAX_VALUE;
 		var maxX = Integer.MIN_VALUE;
@@ -109,4 +149,76 @@ public class DustRemoval {
 		}
 		return Math.min(maxX - minX + 1, maxY - minY + 1);
 	}
+
+	private static int cell(int coordinate, double cellSize) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	private static long key(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * union-find over segments, maintaining the bounding box of each cluster
+	 */
+	private static class Clusters {
+		private final int[] parent;
+		private final int[] size;
+		private final int[] minX;
+		private final int[] maxX;
+		private final int[] minY;
+		private final int[] maxY;
+
+		Clusters(ArrayList<Segment> segments) {
+			var n = segments.size();
+			parent = new int[n];
+			size = new int[n];
+			minX = new int[n];
+			maxX = new int[n];
+			minY = new int[n];
+			maxY = new int[n];
+			for (var s = 0; s < n; s++) {
+				parent[s] = s;
+				size[s] = 1;
+				minX[s] = minY[s] = Integer.MAX_VALUE;
+				maxX[s] = maxY[s] = Integer.MIN_VALUE;
+				for (var p : segments.get(s).points()) {
+					minX[s] = Math.min(minX[s], p.x());
+					maxX[s] = Math.max(maxX[s], p.x());
+					minY[s] = Math.min(minY[s], p.y());
+					maxY[s] = Math.max(maxY[s], p.y());
+				}
+			}
+		}
+
+		int find(int s) {
+			while (parent[s] != s) {
+				parent[s] = parent[parent[s]];
+				s = parent[s];
+			}
+			return s;
+		}
+
+		void union(int a, int b) {
+			a = find(a);
+			b = find(b);
+			if (a == b)
+				return;
+			if (size[a] < size[b]) {
+				var tmp = a;
+				a = b;
+				b = tmp;
+			}
+			parent[b] = a;
+			size[a] += size[b];
+			minX[a] = Math.min(minX[a], minX[b]);
+			maxX[a] = Math.max(maxX[a], maxX[b]);
+			minY[a] = Math.min(minY[a], minY[b]);
+			maxY[a] = Math.max(maxY[a], maxY[b]);
+		}
+
+		int minExtent(int root) {
+			return Math.min(maxX[root] - minX[root] + 1, maxY[root] - minY[root] + 1);
+		}
+	}
 }
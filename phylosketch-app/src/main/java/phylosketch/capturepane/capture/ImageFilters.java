@@ -0,0 +1,383 @@
+/*
+ * ImageFilters.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package phylosketch.capturepane.capture;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * filters on gray values, used to clean up scans and photographs before thresholding
+ * All filters read from a source raster and write into a new one, using integer arithmetic on the backing arrays.
+ * Separable filters are applied as a horizontal pass followed by a vertical pass. Rows are processed in bands, in parallel.
+ * Daniel Huson, 10.2026
+ */
+public class ImageFilters {
+	/**
+	 * minimum number of pixels per band before rows are processed in parallel
+	 */
+	private static final int PIXELS_PER_BAND = 1 << 18;
+	/**
+	 * fixed point scale of the Gaussian kernel weights
+	 */
+	private static final int WEIGHT_BITS = 16;
+
+	/**
+	 * gradient computed by the Sobel operator
+	 *
+	 * @param magnitude gradient magnitude, scaled so that a step from 0 to 255 gives 255
+	 * @param direction gradient direction, angles -pi to pi mapped to 0-255, or null, if not requested
+	 */
+	public record Gradient(ByteRaster magnitude, ByteRaster direction) {
+	}
+
+	/**
+	 * applies the filters set in the parameters, in the order contrast stretch, blur, gap filling
+	 *
+	 * @param gray       the gray values
+	 * @param parameters the parameters
+	 * @return the filtered gray values, or the input, if no filter is set
+	 */
+	public static ByteRaster preprocess(ByteRaster gray, Parameters parameters) {
+		return preprocess(gray, parameters, 1);
+	}
+
+	/**
+	 * applies the filters set in the parameters to an image that was downscaled by the given factor,
+	 * scaling the blur sigma and the gap filling radius, which are given in full resolution pixels
+	 *
+	 * @param gray       the gray values of the downscaled image
+	 * @param parameters the parameters
+	 * @param factor     the factor by which the image was downscaled, at least 1
+	 * @return the filtered gray values, or the input, if no filter applies at this scale
+	 */
+	public static ByteRaster preprocess(ByteRaster gray, Parameters parameters, int factor) {
+		var result = gray;
+		if (parameters.isStretchContrast())
+			result = applyLut(result, autoStretchLut(Thresholding.computeHistogram(result), 0.005));
+		var sigma = parameters.getBlurSigma() / factor;
+		if (sigma > 0)
+			result = gaussianBlur(result, sigma);
+		var radius = (int) Math.round((double) parameters.getFillGaps() / factor);
+		if (radius > 0)
+			result = open(result, radius);
+		return result;
+	}
+
+	/**
+	 * separable Gaussian blur, pixels beyond the border are replaced by the nearest border pixel
+	 *
+	 * @param gray  the gray values
+	 * @param sigma the standard deviation, in pixels
+	 * @return the blurred gray values
+	 */
+	public static ByteRaster gaussianBlur(ByteRaster gray, double sigma) {
+		if (sigma <= 0)
+			return copy(gray);
+		var kernel = gaussianKernel(sigma);
+		var radius = kernel.length / 2;
+		var width = gray.getWidth();
+		var height = gray.getHeight();
+		var round = 1 << (WEIGHT_BITS - 1);
+
+		var horizontal = new ByteRaster(width, height);
+		forEachBand(width, height, (yStart, yEnd) -> {
+			var source = gray.getData();
+			var target = horizontal.getData();
+			for (var y = yStart; y < yEnd; y++) {
+				var offset = gray.index(0, y);
+				var targetOffset = horizontal.index(0, y);
+				for (var x = 0; x < width; x++) {
+					var sum = round;
+					if (x >= radius && x + radius < width) {
+						for (var k = 0; k < kernel.length; k++)
+							sum += kernel[k] * (source[offset + x - radius + k] & 0xFF);
+					} else {
+						for (var k = 0; k < kernel.length; k++)
+							sum += kernel[k] * (source[offset + clamp(x - radius + k, width)] & 0xFF);
+					}
+					target[targetOffset + x] = (byte) (sum >>> WEIGHT_BITS);
+				}
+			}
+		});
+
+		var result = new ByteRaster(width, height);
+		forEachBand(width, height, (yStart, yEnd) -> {
+			var source = horizontal.getData();
+			var target = result.getData();
+			var sums = new int[width];
+			for (var y = yStart; y < yEnd; y++) {
+				Arrays.fill(sums, round);
+				for (var k = 0; k < kernel.length; k++) {
+					var weight = kernel[k];
+					var offset = horizontal.index(0, clamp(y - radius + k, height));
+					for (var x = 0; x < width; x++)
+						sums[x] += weight * (source[offset + x] & 0xFF);
+				}
+				var targetOffset = result.index(0, y);
+				for (var x = 0; x < width; x++)
+					target[targetOffset + x] = (byte) (sums[x] >>> WEIGHT_BITS);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Sobel operator, pixels beyond the border are replaced by the nearest border pixel
+	 *
+	 * @param gray             the gray values
+	 * @param computeDirection also compute the gradient direction?
+	 * @return gradient magnitude and, optionally, direction
+	 */
+	public static Gradient sobel(ByteRaster gray, boolean computeDirection) {
+		var width = gray.getWidth();
+		var height = gray.getHeight();
+		var magnitude = new ByteRaster(width, height);
+		var direction = (computeDirection ? new ByteRaster(width, height) : null);
+
+		forEachBand(width, height, (yStart, yEnd) -> {
+			var source = gray.getData();
+			var magnitudes = magnitude.getData();
+			var directions = (direction != null ? direction.getData() : null);
+			for (var y = yStart; y < yEnd; y++) {
+				var above = gray.index(0, Math.max(0, y - 1));
+				var row = gray.index(0, y);
+				var below = gray.index(0, Math.min(height - 1, y + 1));
+				var targetOffset = magnitude.index(0, y);
+				for (var x = 0; x < width; x++) {
+					var left = Math.max(0, x - 1);
+					var right = Math.min(width - 1, x + 1);
+					var topLeft = source[above + left] & 0xFF;
+					var top = source[above + x] & 0xFF;
+					var topRight = source[above + right] & 0xFF;
+					var midLeft = source[row + left] & 0xFF;
+					var midRight = source[row + right] & 0xFF;
+					var bottomLeft = source[below + left] & 0xFF;
+					var bottom = source[below + x] & 0xFF;
+					var bottomRight = source[below + right] & 0xFF;
+
+					var gx = (topRight + 2 * midRight + bottomRight) - (topLeft + 2 * midLeft + bottomLeft);
+					var gy = (bottomLeft + 2 * bottom + bottomRight) - (topLeft + 2 * top + topRight);
+					magnitudes[targetOffset + x] = (byte) Math.min(255, (int) Math.sqrt(gx * gx + gy * gy) >> 2);
+					if (directions != null && (gx != 0 || gy != 0))
+						directions[targetOffset + x] = (byte) ((int) Math.floor((Math.atan2(gy, gx) + Math.PI) * (128.0 / Math.PI)) & 0xFF);
+				}
+			}
+		});
+		return new Gradient(magnitude, direction);
+	}
+
+	/**
+	 * maps all gray values using a lookup table
+	 *
+	 * @param gray the gray values
+	 * @param lut  256 entries
+	 * @return the mapped gray values
+	 */
+	public static ByteRaster applyLut(ByteRaster gray, byte[] lut) {
+		if (lut.length != 256)
+			throw new IllegalArgumentException("Lookup table must have 256 entries, got: " + lut.length);
+		var result = new ByteRaster(gray.getWidth(), gray.getHeight());
+		forEachBand(gray.getWidth(), gray.getHeight(), (yStart, yEnd) -> {
+			var source = gray.getData();
+			var target = result.getData();
+			for (var y = yStart; y < yEnd; y++) {
+				var offset = gray.index(0, y);
+				var targetOffset = result.index(0, y);
+				for (var x = 0; x < gray.getWidth(); x++)
+					target[targetOffset + x] = lut[source[offset + x] & 0xFF];
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * lookup table that maps v to 255*(v/255)^gamma. Values of gamma above 1 darken mid tones, below 1 lighten them
+	 */
+	public static byte[] gammaLut(double gamma) {
+		var lut = new byte[256];
+		for (var v = 0; v < 256; v++)
+			lut[v] = (byte) Math.round(255.0 * Math.pow(v / 255.0, gamma));
+		return lut;
+	}
+
+	/**
+	 * lookup table that linearly maps low to 0 and high to 255, clamping values outside
+	 */
+	public static byte[] stretchLut(int low, int high) {
+		var lut = new byte[256];
+		if (high <= low) {
+			for (var v = 0; v < 256; v++)
+				lut[v] = (byte) (v <= low ? 0 : 255);
+		} else {
+			for (var v = 0; v < 256; v++)
+				lut[v] = (byte) Math.max(0, Math.min(255, Math.round(255.0 * (v - low) / (high - low))));
+		}
+		return lut;
+	}
+
+	/**
+	 * lookup table that stretches the range of gray values to 0-255, ignoring the given fraction of darkest and of lightest pixels
+	 *
+	 * @param histogram    the gray value histogram
+	 * @param clipFraction fraction of pixels ignored at either end
+	 */
+	public static byte[] autoStretchLut(int[] histogram, double clipFraction) {
+		var total = 0L;
+		for (var count : histogram)
+			total += count;
+		var clip = (long) (clipFraction * total);
+
+		var low = 0;
+		var cumulative = (long) histogram[low];
+		while (low < 255 && cumulative <= clip)
+			cumulative += histogram[++low];
+		var high = 255;
+		cumulative = histogram[high];
+		while (high > 0 && cumulative <= clip)
+			cumulative += histogram[--high];
+		return stretchLut(low, high);
+	}
+
+	/**
+	 * replaces each gray value by the minimum in the square of the given radius around it, which grows dark lines
+	 */
+	public static ByteRaster erode(ByteRaster gray, int radius) {
+		return rankFilter(gray, radius, true);
+	}
+
+	/**
+	 * replaces each gray value by the maximum in the square of the given radius around it, which shrinks dark lines
+	 */
+	public static ByteRaster dilate(ByteRaster gray, int radius) {
+		return rankFilter(gray, radius, false);
+	}
+
+	/**
+	 * morphological opening, a dilation of the erosion. Fills light gaps in dark lines that are narrower than the square
+	 */
+	public static ByteRaster open(ByteRaster gray, int radius) {
+		return dilate(erode(gray, radius), radius);
+	}
+
+	/**
+	 * morphological closing, an erosion of the dilation. Removes dark specks that are smaller than the square
+	 */
+	public static ByteRaster close(ByteRaster gray, int radius) {
+		return erode(dilate(gray, radius), radius);
+	}
+
+	/**
+	 * separable minimum or maximum filter over a square of the given radius
+	 */
+	private static ByteRaster rankFilter(ByteRaster gray, int radius, boolean minimum) {
+		if (radius <= 0)
+			return copy(gray);
+		var width = gray.getWidth();
+		var height = gray.getHeight();
+
+		var horizontal = new ByteRaster(width, height);
+		forEachBand(width, height, (yStart, yEnd) -> {
+			var source = gray.getData();
+			var target = horizontal.getData();
+			for (var y = yStart; y < yEnd; y++) {
+				var offset = gray.index(0, y);
+				var targetOffset = horizontal.index(0, y);
+				for (var x = 0; x < width; x++) {
+					var x1 = Math.min(width - 1, x + radius);
+					var value = source[offset + Math.max(0, x - radius)] & 0xFF;
+					for (var xx = Math.max(0, x - radius) + 1; xx <= x1; xx++)
+						value = (minimum ? Math.min(value, source[offset + xx] & 0xFF) : Math.max(value, source[offset + xx] & 0xFF));
+					target[targetOffset + x] = (byte) value;
+				}
+			}
+		});
+
+		var result = new ByteRaster(width, height);
+		forEachBand(width, height, (yStart, yEnd) -> {
+			var source = horizontal.getData();
+			var target = result.getData();
+			for (var y = yStart; y < yEnd; y++) {
+				var targetOffset = result.index(0, y);
+				var y0 = Math.max(0, y - radius);
+				var y1 = Math.min(height - 1, y + radius);
+				System.arraycopy(source, horizontal.index(0, y0), target, targetOffset, width);
+				for (var yy = y0 + 1; yy <= y1; yy++) {
+					var offset = horizontal.index(0, yy);
+					for (var x = 0; x < width; x++) {
+						var value = source[offset + x] & 0xFF;
+						var current = target[targetOffset + x] & 0xFF;
+						if (minimum ? value < current : value > current)
+							target[targetOffset + x] = (byte) value;
+					}
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Gaussian kernel of radius ceil(3*sigma), as fixed point weights that sum to exactly 1 << WEIGHT_BITS
+	 */
+	static int[] gaussianKernel(double sigma) {
+		var radius = Math.max(1, (int) Math.ceil(3 * sigma));
+		var weights = new double[2 * radius + 1];
+		var total = 0.0;
+		for (var i = -radius; i <= radius; i++) {
+			weights[i + radius] = Math.exp(-(i * i) / (2 * sigma * sigma));
+			total += weights[i + radius];
+		}
+		var kernel = new int[weights.length];
+		var sum = 0;
+		for (var i = 0; i < weights.length; i++) {
+			kernel[i] = (int) Math.round((1 << WEIGHT_BITS) * weights[i] / total);
+			sum += kernel[i];
+		}
+		kernel[radius] += (1 << WEIGHT_BITS) - sum;
+		return kernel;
+	}
+
+	private static ByteRaster copy(ByteRaster gray) {
+		var result = new ByteRaster(gray.getWidth(), gray.getHeight());
+		System.arraycopy(gray.getData(), 0, result.getData(), 0, gray.getData().length);
+		return result;
+	}
+
+	private static int clamp(int i, int size) {
+		return i < 0 ? 0 : (i >= size ? size - 1 : i);
+	}
+
+	private interface RowRange {
+		void apply(int yStart, int yEnd);
+	}
+
+	/**
+	 * splits the rows into bands of at least PIXELS_PER_BAND pixels and processes them in parallel
+	 */
+	private static void forEachBand(int width, int height, RowRange rowRange) {
+		var bands = Math.max(1, Math.min(height, (int) ((long) width * height / PIXELS_PER_BAND)));
+		var rowsPerBand = (height + bands - 1) / bands;
+		if (bands == 1)
+			rowRange.apply(0, height);
+		else
+			IntStream.range(0, bands).parallel().forEach(b -> rowRange.apply(b * rowsPerBand, Math.min(height, (b + 1) * rowsPerBand)));
+	}
+}
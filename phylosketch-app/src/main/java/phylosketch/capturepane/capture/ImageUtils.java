@@ -20,169 +20,181 @@
 
 package phylosketch.capturepane.capture;
 
-import javafx.scene.image.Image;
-import javafx.scene.image.WritableImage;
-import javafx.scene.paint.Color;
+import phylosketch.ocr.ArgbRaster;
 
 
 /**
  * utilities for working with images
+ * All conversions work directly on the pixel arrays of rasters, so they do not require the JavaFX toolkit.
  * Daniel Huson, 12.2024
  */
 public class ImageUtils {
-
+	/**
+	 * result of a single pass over the pixels of an image
+	 *
+	 * @param luminance weighted gray values used for thresholding
+	 * @param histogram 256-bin histogram of the luminance values
+	 * @param grayScale averaged gray image used for OCR, or null, if not requested
+	 */
+	public record Conversion(ByteRaster luminance, int[] histogram, ArgbRaster grayScale) {
+	}
 
 	/**
-	 * Converts an Image into a binary matrix optimized for line extraction.
+	 * reads all pixels of an image once, computing the luminance raster, its histogram and, optionally, the gray scale image
+	 *
+	 * @param image                 the input image
+	 * @param computeGrayScaleImage also compute the gray scale image used for OCR?
+	 * @return the conversion
 	 */
-	public static int[][] convertToBinaryArray(Image image) {
-		var width = (int) image.getWidth();
-		var height = (int) image.getHeight();
-		var binaryMatrix = new int[height][width];
+	public static Conversion convert(ArgbRaster image, boolean computeGrayScaleImage) {
+		var width = image.getWidth();
+		var height = image.getHeight();
+		var pixels = image.getPixels();
 
-		var pixelReader = image.getPixelReader();
+		var luminance = new ByteRaster(width, height);
+		var data = luminance.getData();
+		var histogram = new int[256];
 
-		// Adaptive thresholding parameters
-		var thresholdFactor = 1.2; // Adjust to make more lines visible
+		var grayScale = (computeGrayScaleImage ? new ArgbRaster(width, height) : null);
+		var grayPixels = (grayScale != null ? grayScale.getPixels() : null);
 
-		// Step 1: Convert to grayscale with enhanced contrast
-		var pixelValues = new int[width * height];
-		var index = 0;
 		for (var y = 0; y < height; y++) {
+			var offset = luminance.index(0, y);
+			var pixelOffset = image.index(0, y);
 			for (var x = 0; x < width; x++) {
-				var argb = pixelReader.getArgb(x, y);
+				var argb = pixels[pixelOffset + x];
 				var r = (argb >> 16) & 0xFF;
 				var g = (argb >> 8) & 0xFF;
 				var b = argb & 0xFF;
 
 				// Convert to grayscale but give more weight to dark features
 				var gray = (int) (0.3 * r + 0.59 * g + 0.11 * b);
-				pixelValues[index++] = gray;
+				data[offset + x] = (byte) gray;
+				histogram[gray]++;
+
+				if (grayPixels != null) {
+					var alpha = argb >>> 24;
+					if (alpha > 0) {
+						var average = (r + g + b + 1) / 3; // Average grayscale
+						grayPixels[pixelOffset + x] = (alpha << 24) | (average << 16) | (average << 8) | average;
+					} else {
+						grayPixels[pixelOffset + x] = 0xFFFFFFFF;
+					}
+				}
 			}
 		}
+		return new Conversion(luminance, histogram, grayScale);
+	}
 
-		// Compute the median brightness as an adaptive threshold
-		var threshold = computeAdaptiveThreshold(pixelValues, thresholdFactor);
+	/**
+	 * downscales the luminance of a conversion by an integer factor. Each block of factor x factor pixels is replaced by its
+	 * darkest value, so that thin dark lines survive
+	 *
+	 * @param conversion the conversion
+	 * @param factor     the factor, at least 1
+	 * @return conversion of the downscaled image, without gray scale image
+	 */
+	public static Conversion downscale(Conversion conversion, int factor) {
+		var source = conversion.luminance();
+		var sourceData = source.getData();
+		var width = (source.getWidth() + factor - 1) / factor;
+		var height = (source.getHeight() + factor - 1) / factor;
+
+		var luminance = new ByteRaster(width, height);
+		var data = luminance.getData();
+		var histogram = new int[256];
 
-		// Step 2: Apply thresholding
 		for (var y = 0; y < height; y++) {
+			var y1 = Math.min(source.getHeight(), (y + 1) * factor);
 			for (var x = 0; x < width; x++) {
-				var argb = pixelReader.getArgb(x, y);
-				int r = (argb >> 16) & 0xFF;
-				int g = (argb >> 8) & 0xFF;
-				int b = argb & 0xFF;
-
-				var gray = (int) (0.3 * r + 0.59 * g + 0.11 * b);
-				binaryMatrix[y][x] = (gray > threshold) ? 0 : 1; // Black (1) or White (0)
+				var x0 = x * factor;
+				var x1 = Math.min(source.getWidth(), x0 + factor);
+				var min = 255;
+				for (var sy = y * factor; sy < y1; sy++) {
+					var offset = source.index(0, sy);
+					for (var sx = x0; sx < x1; sx++)
+						min = Math.min(min, sourceData[offset + sx] & 0xFF);
+				}
+				data[luminance.index(x, y)] = (byte) min;
+				histogram[min]++;
 			}
 		}
-
-		return binaryMatrix;
+		return new Conversion(luminance, histogram, null);
 	}
 
 	/**
-	 * Computes an adaptive threshold based on image contrast.
+	 * Converts an image into a binary raster optimized for line extraction.
 	 */
-	private static int computeAdaptiveThreshold(int[] pixelValues, double thresholdFactor) {
-		java.util.Arrays.sort(pixelValues);
-
-		var medianIndex = pixelValues.length / 2;
-		var median = pixelValues[medianIndex];
-		var threshold = (int) (median * thresholdFactor);
-		return Math.max(50, Math.min(threshold, 200));
+	public static BitRaster convertToBinaryRaster(ArgbRaster image) {
+		return convertToBinaryRaster(convert(image, false));
 	}
 
-	public static Image convertToImage(int[][] binaryImage, Color fgColor) {
-		int height = binaryImage.length;
-		int width = binaryImage[0].length;
-
-		var writableImage = new WritableImage(width, height);
-		var pixelWriter = writableImage.getPixelWriter();
-
-			for (int y = 0; y < height; y++) {
-				for (int x = 0; x < width; x++) {
-					var color = (binaryImage[y][x] != 0) ? fgColor : Color.TRANSPARENT;
-				pixelWriter.setColor(x, y, color);
-			}
-		}
-		return writableImage;
+	/**
+	 * Converts the luminance of an image into a binary raster optimized for line extraction,
+	 * using a global threshold derived from the median brightness.
+	 */
+	public static BitRaster convertToBinaryRaster(Conversion conversion) {
+		return Thresholding.apply(conversion.luminance(), conversion.histogram(), Thresholding.Method.Median, 0, 0);
 	}
 
-	public static Image convertToGrayScale(Image image) {
-		var width = (int) image.getWidth();
-		var height = (int) image.getHeight();
-
-		// Convert to grayscale
-		var grayImage = new WritableImage(width, height);
-		var reader = image.getPixelReader();
-			for (var x = 0; x < width; x++) {
-				for (var y = 0; y < height; y++) {
-					var color = reader.getColor(x, y);
-				if (color.getOpacity() > 0) {
-					var gray = (color.getRed() + color.getGreen() + color.getBlue()) / 3; // Average grayscale
-					grayImage.getPixelWriter().setColor(x, y, new Color(gray, gray, gray, color.getOpacity()));
-				} else {
-					grayImage.getPixelWriter().setColor(x, y, Color.WHITE);
-				}
-			}
-		}
-		return grayImage;
+	/**
+	 * Converts the luminance of an image into a binary raster, using the filters and thresholding method set in the parameters.
+	 */
+	public static BitRaster convertToBinaryRaster(Conversion conversion, Parameters parameters) {
+		var luminance = ImageFilters.preprocess(conversion.luminance(), parameters);
+		var histogram = (luminance == conversion.luminance() ? conversion.histogram() : Thresholding.computeHistogram(luminance));
+		return Thresholding.apply(luminance, histogram, parameters.getThresholdMethod(),
+				parameters.getThresholdWindow(), parameters.getThresholdSensitivity());
 	}
 
-	public static Image replaceTransparentBackground(Image image) {
-		int width = (int) image.getWidth();
-		int height = (int) image.getHeight();
-
-		// Create a writable image
-		var writableImage = new WritableImage(width, height);
-		var pixelReader = image.getPixelReader();
-		var pixelWriter = writableImage.getPixelWriter();
-
-		for (var x = 0; x < width; x++) {
-			for (var y = 0; y < height; y++) {
-				// Read the color at each pixel
-				var color = pixelReader.getColor(x, y);
-
-				// Check if the pixel is transparent (alpha < 1.0)
-				if (color.getOpacity() == 0) {
-					// Replace it with white
-					pixelWriter.setColor(x, y, Color.WHITE);
-				} else {
-					// Keep the original color
-					pixelWriter.setColor(x, y, color);
+	/**
+	 * draws the foreground of a binary raster onto a transparent image
+	 *
+	 * @param binaryImage the raster
+	 * @param fgArgb      the ARGB color to use for foreground pixels
+	 * @return the image
+	 */
+	public static ArgbRaster convertToImage(BitRaster binaryImage, int fgArgb) {
+		var height = binaryImage.getHeight();
+		var width = binaryImage.getWidth();
+		var words = binaryImage.getWords();
+		var wordsPerRow = binaryImage.getWordsPerRow();
+
+		var image = new ArgbRaster(width, height); // transparent
+		var pixels = image.getPixels();
+		for (var y = 0; y < height; y++) {
+			var rowStart = y * wordsPerRow;
+			var pixelOffset = image.index(0, y);
+			for (var w = 0; w < wordsPerRow; w++) {
+				var word = words[rowStart + w];
+				while (word != 0) {
+					pixels[pixelOffset + (w << 6) + Long.numberOfTrailingZeros(word)] = fgArgb;
+					word &= word - 1;
 				}
 			}
 		}
-		return writableImage;
+		return image;
 	}
 
-	public static boolean tooMuchBlack(int[][] binaryMatrix, double maxProportion) {
-		var height = binaryMatrix.length;
-		var width = binaryMatrix[0].length;
-		var max = maxProportion * width * height;
-		var blackPixels = 0;
-		for (var row : binaryMatrix) {
-			for (var value : row) {
-				if (value != 0) {
-					blackPixels++;
-					if (blackPixels >= max)
-						return true;
-				}
-			}
-		}
-		return false;
+	public static ArgbRaster convertToGrayScale(ArgbRaster image) {
+		return convert(image, true).grayScale();
 	}
 
-	public static Image cropImage(Image input, int x, int y, int width, int height) {
-		var reader = input.getPixelReader();
-		if (reader == null) {
-			throw new IllegalArgumentException("Image has no pixel reader.");
+	/**
+	 * replaces fully transparent pixels by white, keeping all others
+	 */
+	public static ArgbRaster replaceTransparentBackground(ArgbRaster image) {
+		var result = image.copy();
+		var pixels = result.getPixels();
+		for (var i = 0; i < image.getWidth() * image.getHeight(); i++) {
+			if ((pixels[i] >>> 24) == 0)
+				pixels[i] = 0xFFFFFFFF;
 		}
+		return result;
+	}
 
-		// Clamp to avoid IndexOutOfBounds
-		var croppedWidth = Math.min(width, (int) input.getWidth() - x);
-		var croppedHeight = Math.min(height, (int) input.getHeight() - y);
-
-		return new WritableImage(reader, x, y, croppedWidth, croppedHeight);
+	public static boolean tooMuchBlack(BitRaster binaryRaster, double maxProportion) {
+		var max = (long) Math.ceil(maxProportion * binaryRaster.getWidth() * binaryRaster.getHeight());
+		return binaryRaster.cardinalityAtLeast(Math.max(1, max));
 	}
 }
@@ -0,0 +1,86 @@
+/*
+ * IntArrayList.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.capturepane.capture;
+
+import java.util.Arrays;
+
+/**
+ * a growable list of primitive ints, used for pixel work lists and packed coordinates
+ * Daniel Huson, 10.2026
+ */
+public final class IntArrayList {
+	private int[] values;
+	private int size;
+
+	public IntArrayList() {
+		this(16);
+	}
+
+	public IntArrayList(int capacity) {
+		values = new int[Math.max(1, capacity)];
+	}
+
+	public void add(int value) {
+		if (size == values.length)
+			values = Arrays.copyOf(values, 2 * values.length);
+		values[size++] = value;
+	}
+
+	public void addAll(IntArrayList other) {
+		if (size + other.size > values.length)
+			values = Arrays.copyOf(values, Math.max(2 * values.length, size + other.size));
+		System.arraycopy(other.values, 0, values, size, other.size);
+		size += other.size;
+	}
+
+	public int get(int index) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException(index);
+		return values[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * concatenates lists, preserving order
+	 */
+	public static IntArrayList concat(Iterable<IntArrayList> lists) {
+		var result = new IntArrayList();
+		for (var list : lists) {
+			result.addAll(list);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * IntRaster.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.capturepane.capture;
+
+/**
+ * an int-valued raster stored in a single flat array with a row stride, used as a label plane
+ * Daniel Huson, 10.2026
+ */
+public final class IntRaster {
+	private final int width;
+	private final int height;
+	private final int stride;
+	private final int[] data;
+
+	/**
+	 * constructs a raster with all values 0
+	 *
+	 * @param width  width in pixels
+	 * @param height height in pixels
+	 */
+	public IntRaster(int width, int height) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid raster size: " + width + "x" + height);
+		this.width = width;
+		this.height = height;
+		this.stride = width;
+		this.data = new int[stride * height];
+	}
+
+	/**
+	 * creates a label plane from a mask, setting all foreground pixels to the given value
+	 *
+	 * @param mask  the mask
+	 * @param value the value for foreground pixels
+	 * @return the label plane
+	 */
+	public static IntRaster fromMask(BitRaster mask, int value) {
+		var raster = new IntRaster(mask.getWidth(), mask.getHeight());
+		var words = mask.getWords();
+		var wordsPerRow = mask.getWordsPerRow();
+		for (var y = 0; y < raster.height; y++) {
+			var rowStart = y * raster.stride;
+			for (var w = 0; w < wordsPerRow; w++) {
+				var word = words[y * wordsPerRow + w];
+				while (word != 0) {
+					var x = (w << 6) + Long.numberOfTrailingZeros(word);
+					raster.data[rowStart + x] = value;
+					word &= word - 1;
+				}
+			}
+		}
+		return raster;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * the distance between the starts of two consecutive rows in the backing array
+	 */
+	public int getStride() {
+		return stride;
+	}
+
+	/**
+	 * the backing array, row y starts at y*stride
+	 */
+	public int[] getData() {
+		return data;
+	}
+
+	public int index(int x, int y) {
+		return y * stride + x;
+	}
+
+	public int get(int x, int y) {
+		return data[y * stride + x];
+	}
+
+	public void set(int x, int y, int value) {
+		data[y * stride + x] = value;
+	}
+
+	public boolean contains(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	/**
+	 * memory used by the backing array, in bytes
+	 */
+	public long memoryBytes() {
+		return 4L * data.length;
+	}
+}
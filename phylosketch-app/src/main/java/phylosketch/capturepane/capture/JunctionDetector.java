@@ -0,0 +1,206 @@
+/*
+ * JunctionDetector.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.capturepane.capture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * classifies the pixels of a skeleton as end points and junctions in a single pass
+ * <p>
+ * An end point has exactly one foreground pixel among its 8 neighbours.
+ * A junction is a pixel for which some square ring of distance 1-4 is crossed by at least three thin lines,
+ * that is, contains at least three foreground pixels that have no foreground neighbour on the same ring.
+ * The rings are encoded as cyclic bit masks, so that the crossings are counted using a few shifts and a bit count.
+ * Pixel locations are returned packed as y*width+x.
+ * Daniel Huson, 10.2026
+ */
+public class JunctionDetector {
+	private static final int MAX_DISTANCE = 4;
+	private static final int MIN_CROSSINGS = 3;
+	/**
+	 * minimum number of pixels per band before rows are processed in parallel
+	 */
+	private static final int PIXELS_PER_BAND = 1 << 18;
+
+	/**
+	 * number of crossings for ring distance 1, indexed by the 8-neighbour code, see {@link BitRaster#neighborCode(int, int)}
+	 */
+	private static final byte[] CROSSINGS_1 = new byte[256];
+
+	// ring offsets, clockwise starting at the top-left corner, for distances 2 to MAX_DISTANCE
+	private static final int[][] RING_DX = new int[MAX_DISTANCE + 1][];
+	private static final int[][] RING_DY = new int[MAX_DISTANCE + 1][];
+
+	static {
+		// in the neighbour code, the corners are bits 1, 3, 5 and 7
+		for (var code = 0; code < 256; code++) {
+			CROSSINGS_1[code] = (byte) countCrossings(code, 8, 0b10101010L);
+		}
+		for (var d = 2; d <= MAX_DISTANCE; d++) {
+			var n = 8 * d;
+			RING_DX[d] = new int[n];
+			RING_DY[d] = new int[n];
+			for (var i = 0; i < n; i++) {
+				var side = i / (2 * d);
+				var offset = i % (2 * d);
+				switch (side) {
+					case 0 -> {
+						RING_DX[d][i] = -d + offset;
+						RING_DY[d][i] = -d;
+					}
+					case 1 -> {
+						RING_DX[d][i] = d;
+						RING_DY[d][i] = -d + offset;
+					}
+					case 2 -> {
+						RING_DX[d][i] = d - offset;
+						RING_DY[d][i] = d;
+					}
+					default -> {
+						RING_DX[d][i] = -d;
+						RING_DY[d][i] = d - offset;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * the result: end points and junctions, each in row-major order and packed as y*width+x
+	 */
+	public record Result(int width, int[] endPoints, int[] junctions) {
+		public List<Point> endPointList() {
+			return toPoints(endPoints, width);
+		}
+
+		public List<Point> junctionList() {
+			return toPoints(junctions, width);
+		}
+	}
+
+	/**
+	 * classifies all pixels of the skeleton
+	 *
+	 * @param skeleton the skeleton
+	 * @return end points and junctions
+	 */
+	public static Result apply(BitRaster skeleton) {
+		var width = skeleton.getWidth();
+		var height = skeleton.getHeight();
+		var bands = Math.max(1, Math.min(height, (int) ((long) width * height / PIXELS_PER_BAND)));
+		var rowsPerBand = (height + bands - 1) / bands;
+
+		var endPointLists = new ArrayList<IntArrayList>(bands);
+		var junctionLists = new ArrayList<IntArrayList>(bands);
+		for (var b = 0; b < bands; b++) {
+			endPointLists.add(new IntArrayList());
+			junctionLists.add(new IntArrayList());
+		}
+
+		IntStream.range(0, bands).parallel().forEach(b -> {
+			var endPoints = endPointLists.get(b);
+			var junctions = junctionLists.get(b);
+			var words = skeleton.getWords();
+			var wordsPerRow = skeleton.getWordsPerRow();
+			var yEnd = Math.min(height, (b + 1) * rowsPerBand);
+			for (var y = b * rowsPerBand; y < yEnd; y++) {
+				for (var w = 0; w < wordsPerRow; w++) {
+					var word = words[y * wordsPerRow + w];
+					while (word != 0) {
+						var x = (w << 6) + Long.numberOfTrailingZeros(word);
+						word &= word - 1;
+						var code = skeleton.neighborCodeSafe(x, y);
+						if (Integer.bitCount(code) == 1)
+							endPoints.add(y * width + x);
+						if (isJunction(skeleton, x, y, code))
+							junctions.add(y * width + x);
+					}
+				}
+			}
+		});
+		return new Result(width, IntArrayList.concat(endPointLists).toArray(), IntArrayList.concat(junctionLists).toArray());
+	}
+
+	/**
+	 * is the given foreground pixel a junction?
+	 */
+	private static boolean isJunction(BitRaster skeleton, int x, int y, int code) {
+		if (CROSSINGS_1[code] >= MIN_CROSSINGS)
+			return true;
+		for (var d = 2; d <= MAX_DISTANCE; d++) {
+			var ringDx = RING_DX[d];
+			var ringDy = RING_DY[d];
+			var ring = 0L;
+			for (var i = 0; i < ringDx.length; i++) {
+				if (skeleton.getSafe(x + ringDx[i], y + ringDy[i]))
+					ring |= (1L << i);
+			}
+			if (ring != 0 && countCrossings(ring, 8 * d, cornerMask(d)) >= MIN_CROSSINGS)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * counts the set bits of a cyclic ring that are not adjacent to any other set bit.
+	 * Neighbouring ring positions are adjacent, and so are the two positions on either side of a corner.
+	 *
+	 * @param ring    the ring bits
+	 * @param n       the number of ring positions
+	 * @param corners the corner positions
+	 * @return number of isolated set bits
+	 */
+	static int countCrossings(long ring, int n, long corners) {
+		var previous = rotate(ring, n, 1); // bit i is ring bit i-1
+		var next = rotate(ring, n, n - 1); // bit i is ring bit i+1
+		var beforeCorner = rotate(corners, n, n - 1); // bit i set, if i+1 is a corner
+		var afterCorner = rotate(corners, n, 1); // bit i set, if i-1 is a corner
+		var isolated = ring & ~previous & ~next
+					   & ~(beforeCorner & rotate(ring, n, n - 2))
+					   & ~(afterCorner & rotate(ring, n, 2));
+		return Long.bitCount(isolated);
+	}
+
+	private static long cornerMask(int d) {
+		return 1L | (1L << (2 * d)) | (1L << (4 * d)) | (1L << (6 * d));
+	}
+
+	/**
+	 * rotates the lowest n bits to the left by the given amount
+	 */
+	private static long rotate(long bits, int n, int by) {
+		var mask = (1L << n) - 1;
+		return ((bits << by) | (bits >>> (n - by))) & mask;
+	}
+
+	/**
+	 * unpacks packed pixel locations
+	 */
+	public static List<Point> toPoints(int[] packed, int width) {
+		var list = new ArrayList<Point>(packed.length);
+		for (var p : packed) {
+			list.add(new Point(p % width, p / width));
+		}
+		return list;
+	}
+}
@@ -20,10 +20,11 @@
 
 package phylosketch.capturepane.capture;
 
-import javafx.scene.image.Image;
+import phylosketch.ocr.ArgbRaster;
 import phylosketch.ocr.OCRService;
 import phylosketch.ocr.OcrWord;
 
+import java.nio.file.Path;
 import java.util.List;
 
 
@@ -32,6 +33,11 @@ import java.util.List;
  * Daniel Huson, 3.2025
  */
 public class OCR {
+	/**
+	 * name of the program property that records whether recognized words are cached on disk
+	 */
+	public static final String DISK_CACHE_PROPERTY = "OcrDiskCache";
+
 	private static OCRService ocrService;
 
 	public static void setOCRService(OCRService ocrService) {
@@ -43,6 +49,25 @@ public class OCR {
 		return ocrService;
 	}
 
+	/**
+	 * the directory in which recognized words are cached across sessions, if enabled
+	 */
+	public static Path getDiskCacheDirectory() {
+		return Path.of(System.getProperty("user.home"), ".phylosketch", "ocr-cache");
+	}
+
+	/**
+	 * are recognized words cached on disk? Off by default, as the cache keeps the text of every image recognized
+	 */
+	public static boolean isUseDiskCache() {
+		return ocrService != null && ocrService.getCacheDirectory() != null;
+	}
+
+	public static void setUseDiskCache(boolean use) {
+		if (ocrService != null)
+			ocrService.setCacheDirectory(use ? getDiskCacheDirectory() : null);
+	}
+
 
 	/**
 	 * get words in an image
@@ -50,7 +75,7 @@ public class OCR {
 	 * @param image the image
 	 * @return the words
 	 */
-	public static List<OcrWord> getWords(Image image) throws Exception {
+	public static List<OcrWord> getWords(ArgbRaster image) throws Exception {
 		return ocrService.getWords(image);
 	}
 }
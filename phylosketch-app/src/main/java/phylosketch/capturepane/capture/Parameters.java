@@ -22,6 +22,7 @@ package phylosketch.capturepane.capture;
 
 import javafx.beans.property.*;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -39,7 +40,16 @@ public class Parameters {
 	private final BooleanProperty mustStartAlphaNumeric = new SimpleBooleanProperty(null, "mustStartAlphaNumeric", true);
 	private final BooleanProperty mustEndAlphaNumeric = new SimpleBooleanProperty(null, "mustEndAlphaNumeric", true);
 	private final DoubleProperty minWordConfidence = new SimpleDoubleProperty(null, "minWordConfidence", 50.0);
-	private final List<Property<?>> all = List.of(minDistanceNodes, minWordLength, mustContainLetter, minTextHeight, maxTextHeight, mustStartAlphaNumeric, mustEndAlphaNumeric, minWordConfidence, maxDustDistance, minDustExtent);
+	private final ObjectProperty<Thresholding.Method> thresholdMethod = new SimpleObjectProperty<>(null, "thresholdMethod", Thresholding.Method.Median);
+	private final IntegerProperty thresholdWindow = new SimpleIntegerProperty(null, "thresholdWindow", 41);
+	private final DoubleProperty thresholdSensitivity = new SimpleDoubleProperty(null, "thresholdSensitivity", 0.2);
+	private final BooleanProperty stretchContrast = new SimpleBooleanProperty(null, "stretchContrast", false);
+	private final DoubleProperty blurSigma = new SimpleDoubleProperty(null, "blurSigma", 0.0);
+	private final IntegerProperty fillGaps = new SimpleIntegerProperty(null, "fillGaps", 0);
+	private final BooleanProperty previewLargeImages = new SimpleBooleanProperty(null, "previewLargeImages", true);
+	private final BooleanProperty autoTune = new SimpleBooleanProperty(null, "autoTune", true);
+	private final List<Property<?>> all = List.of(minDistanceNodes, minWordLength, mustContainLetter, minTextHeight, maxTextHeight, mustStartAlphaNumeric, mustEndAlphaNumeric, minWordConfidence, maxDustDistance, minDustExtent,
+			thresholdMethod, thresholdWindow, thresholdSensitivity, stretchContrast, blurSigma, fillGaps, previewLargeImages, autoTune);
 
 	public Parameters() {
 	}
@@ -124,7 +134,108 @@ public class Parameters {
 		return minWordConfidence;
 	}
 
+	public Thresholding.Method getThresholdMethod() {
+		return thresholdMethod.get();
+	}
+
+	public ObjectProperty<Thresholding.Method> thresholdMethodProperty() {
+		return thresholdMethod;
+	}
+
+	public int getThresholdWindow() {
+		return thresholdWindow.get();
+	}
+
+	public IntegerProperty thresholdWindowProperty() {
+		return thresholdWindow;
+	}
+
+	public double getThresholdSensitivity() {
+		return thresholdSensitivity.get();
+	}
+
+	public DoubleProperty thresholdSensitivityProperty() {
+		return thresholdSensitivity;
+	}
+
+	/**
+	 * stretch the gray values to the full range before thresholding?
+	 */
+	public boolean isStretchContrast() {
+		return stretchContrast.get();
+	}
+
+	public BooleanProperty stretchContrastProperty() {
+		return stretchContrast;
+	}
+
+	/**
+	 * standard deviation of the Gaussian blur applied before thresholding, 0 for none
+	 */
+	public double getBlurSigma() {
+		return blurSigma.get();
+	}
+
+	public DoubleProperty blurSigmaProperty() {
+		return blurSigma;
+	}
+
+	/**
+	 * radius of the morphological opening applied before thresholding to fill light gaps in lines, 0 for none
+	 */
+	public int getFillGaps() {
+		return fillGaps.get();
+	}
+
+	public IntegerProperty fillGapsProperty() {
+		return fillGaps;
+	}
+
+	public boolean isPreviewLargeImages() {
+		return previewLargeImages.get();
+	}
+
+	public BooleanProperty previewLargeImagesProperty() {
+		return previewLargeImages;
+	}
+
+	/**
+	 * set the thresholding and filter parameters recommended by {@link PhyloImageAnalyzer} when an image is loaded?
+	 */
+	public boolean isAutoTune() {
+		return autoTune.get();
+	}
+
+	public BooleanProperty autoTuneProperty() {
+		return autoTune;
+	}
+
 	public List<Property<?>> getAll() {
 		return all;
 	}
+
+	/**
+	 * fingerprint of the parameters that determine the binary mask, and thus the skeleton and segments
+	 */
+	public List<Object> thresholdFingerprint() {
+		return fingerprint(thresholdMethod, thresholdWindow, thresholdSensitivity, stretchContrast, blurSigma, fillGaps);
+	}
+
+	/**
+	 * fingerprint of the parameters used to filter and join words
+	 */
+	public List<Object> wordFilterFingerprint() {
+		return fingerprint(minWordConfidence, minWordLength, minTextHeight, maxTextHeight, mustStartAlphaNumeric, mustEndAlphaNumeric, mustContainLetter);
+	}
+
+	/**
+	 * fingerprint of the parameters used in dust removal
+	 */
+	public List<Object> dustFingerprint() {
+		return fingerprint(maxDustDistance, minDustExtent);
+	}
+
+	private static List<Object> fingerprint(Property<?>... properties) {
+		return Arrays.stream(properties).map(p -> (Object) p.getValue()).toList();
+	}
 }
\ No newline at end of file
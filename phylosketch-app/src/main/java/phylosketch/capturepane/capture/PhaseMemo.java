@@ -0,0 +1,60 @@
+/*
+ * PhaseMemo.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.capturepane.capture;
+
+import java.util.Objects;
+
+/**
+ * memoized result of a capture phase, valid as long as the fingerprint of the inputs it was computed from stays the same
+ * Daniel Huson, 10.2026
+ */
+class PhaseMemo<T> {
+	private Object fingerprint;
+	private T value;
+
+	/**
+	 * gets the memoized value
+	 *
+	 * @param fingerprint fingerprint of the current inputs
+	 * @return the value, or null, if nothing was memoized for these inputs
+	 */
+	T get(Object fingerprint) {
+		return value != null && Objects.equals(this.fingerprint, fingerprint) ? value : null;
+	}
+
+	/**
+	 * memoizes a value, replacing any previous one
+	 *
+	 * @param fingerprint fingerprint of the inputs the value was computed from
+	 * @param value       the value
+	 * @return the value
+	 */
+	T set(Object fingerprint, T value) {
+		this.fingerprint = fingerprint;
+		this.value = value;
+		return value;
+	}
+
+	void clear() {
+		fingerprint = null;
+		value = null;
+	}
+}
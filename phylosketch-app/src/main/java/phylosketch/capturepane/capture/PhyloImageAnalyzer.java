@@ -20,16 +20,18 @@
 
 package phylosketch.capturepane.capture;
 
-import javafx.scene.image.Image;
-import javafx.scene.image.PixelReader;
-import javafx.scene.paint.Color;
+import javafx.beans.property.Property;
+import phylosketch.ocr.ArgbRaster;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.Objects;
 
 /**
  * analyze the provided image to provide suitability for phylogenetic capture
+ * Reads every step-th row of the image once, at full horizontal resolution, into a reused buffer and accumulates
+ * a brightness histogram, border darkness and a histogram of the lengths of horizontal runs of dark pixels.
+ * Does not require the JavaFX toolkit or thread, so it can run in the background when an image is loaded.
  * Daniel Huson 11.2025, using ChatGPT
  */
 public final class PhyloImageAnalyzer {
@@ -41,145 +43,274 @@ public final class PhyloImageAnalyzer {
 	private static final int RECOMMENDED_MIN_HEIGHT = 600;
 	private static final int TOO_LARGE_DIMENSION = 5000;
 
-	// Brightness thresholds
-	private static final double VERY_LIGHT = 0.88; // "white-ish" background
-	private static final double VERY_DARK = 0.35;  // "black-ish" foreground
-	private static final double MID_TONE_LOW = VERY_DARK;
-	private static final double MID_TONE_HIGH = VERY_LIGHT;
+	/**
+	 * maximal number of rows read
+	 */
+	private static final int MAX_ROWS = 800;
+	/**
+	 * runs longer than this are lines running along the row, not across it, and are not used to estimate thickness
+	 */
+	private static final int MAX_RUN_LENGTH = 64;
+
+	// Brightness thresholds, on the 0-255 scale of the brightness histogram
+	private static final int VERY_LIGHT = 224; // "white-ish" background, brightness > 0.88
+	private static final int VERY_DARK = 90;   // "black-ish" foreground, brightness < 0.35
+	private static final int COLORED = 77;     // saturation > 0.3, relative to 255
 
 	private PhyloImageAnalyzer() {
 		// utility class
 	}
 
 	/**
-	 * Analyze the given image and report potential problems via the warn consumer.
+	 * supplies the rows of an image
+	 */
+	@FunctionalInterface
+	public interface RowReader {
+		/**
+		 * copies row y into the buffer, as non-premultiplied ARGB values
+		 *
+		 * @param y      the row
+		 * @param buffer the buffer, of length at least the width of the image
+		 */
+		void read(int y, int[] buffer);
+	}
+
+	/**
+	 * result of analyzing an image
+	 *
+	 * @param width               width of the image
+	 * @param height              height of the image
+	 * @param brightnessHistogram histogram of the brightness (maximum of the RGB components) of the sampled pixels
+	 * @param samples             number of sampled pixels
+	 * @param lightFraction       fraction of sampled pixels that are very light
+	 * @param darkFraction        fraction of sampled pixels that are very dark
+	 * @param averageBrightness   average brightness, in the range 0-1
+	 * @param borderDarkFraction  fraction of border pixels that are very dark
+	 * @param coloredDarkFraction fraction of very dark pixels that are strongly colored
+	 * @param darkRuns            number of horizontal runs of very dark pixels
+	 * @param lineThickness       estimated line thickness in pixels, namely the median length of the dark runs that cross lines, or 0, if none
+	 * @param tinyRunFraction     fraction of dark runs that are less than half as long as the line thickness, such as noise
+	 * @param warnings            problems found, for the user
+	 */
+	public record Report(int width, int height, int[] brightnessHistogram, long samples, double lightFraction, double darkFraction,
+						 double averageBrightness, double borderDarkFraction, double coloredDarkFraction, long darkRuns,
+						 double lineThickness, double tinyRunFraction, List<String> warnings) {
+		/**
+		 * fraction of sampled pixels that are neither very light nor very dark
+		 */
+		public double midFraction() {
+			return Math.max(0.0, 1.0 - lightFraction - darkFraction);
+		}
+
+		/**
+		 * brightness value below which the given fraction of the sampled pixels lie
+		 */
+		public int percentile(double fraction) {
+			var bound = (long) (fraction * samples);
+			var cumulative = 0L;
+			for (var value = 0; value < 255; value++) {
+				cumulative += brightnessHistogram[value];
+				if (cumulative > bound)
+					return value;
+			}
+			return 255;
+		}
+
+		/**
+		 * sets the capture parameters for which the image gives a recommendation that differs from the default. Lit
+		 * backgrounds that are not white are thresholded locally, with a window that covers several line widths, faint
+		 * drawings are contrast stretched and noisy ones blurred. All other parameters are left as set by the user
+		 *
+		 * @param parameters the parameters to modify
+		 * @return the changes made, as name: old -> new, for the user, or an empty list, if nothing was changed
+		 */
+		public List<String> applyTo(Parameters parameters) {
+			var defaults = new Parameters();
+			var changes = new ArrayList<String>();
+
+			var litBackground = (lightFraction < 0.5 && darkFraction <= 0.4);
+			if (litBackground) {
+				recommend(parameters.thresholdMethodProperty(), defaults.thresholdMethodProperty(), Thresholding.Method.Sauvola, changes);
+				if (lineThickness > 0)
+					recommend(parameters.thresholdWindowProperty(), defaults.thresholdWindowProperty(), Math.max(15, Math.min(101, 2 * (int) Math.round(4 * lineThickness) + 1)), changes);
+			}
+
+			var faint = (percentile(0.001) >= VERY_DARK || percentile(0.5) <= VERY_LIGHT);
+			if (faint)
+				recommend(parameters.stretchContrastProperty(), defaults.stretchContrastProperty(), true, changes);
+
+			var noisy = (tinyRunFraction > 0.5 && darkFraction < 0.2 && lineThickness >= 2);
+			if (noisy)
+				recommend(parameters.blurSigmaProperty(), defaults.blurSigmaProperty(), 1.0, changes);
+			return changes;
+		}
+
+		/**
+		 * sets the property to the recommended value, unless that is the default value or already set
+		 */
+		private static <T> void recommend(Property<T> property, Property<T> defaultProperty, T value, List<String> changes) {
+			if (!Objects.equals(value, defaultProperty.getValue()) && !Objects.equals(value, property.getValue())) {
+				changes.add(property.getName() + ": " + property.getValue() + " -> " + value);
+				property.setValue(value);
+			}
+		}
+
+		/**
+		 * the default parameters, with those that depend on the image set as recommended for this image
+		 */
+		public Parameters recommendedParameters() {
+			var parameters = new Parameters();
+			applyTo(parameters);
+			return parameters;
+		}
+	}
+
+	/**
+	 * Analyze the given image.
 	 * <p>
 	 * The analysis is heuristic only; it does not attempt to fully understand the tree,
 	 * but checks whether the image looks like a high-contrast dark-on-light drawing
 	 * with reasonable line thickness and low noise.
 	 *
-	 * @param image the JavaFX Image to analyze (must be loaded)
-	 * @param warn  a consumer to receive warning or advice messages
+	 * @param image the image to analyze
+	 * @return the report
 	 */
-	public static void analyze(Image image, Consumer<String> warn) {
-		if (image == null) {
-			warn.accept("No image provided. Please load an image containing your tree or network.");
-			return;
-		}
-
-		PixelReader reader = image.getPixelReader();
-		if (reader == null) {
-			warn.accept("Cannot read pixels from the image. Make sure the image is fully loaded.");
-			return;
-		}
+	public static Report analyze(ArgbRaster image) {
+		return analyze(image.getWidth(), image.getHeight(), (y, buffer) -> System.arraycopy(image.getPixels(), image.index(0, y), buffer, 0, image.getWidth()));
+	}
 
-		int width = (int) Math.round(image.getWidth());
-		int height = (int) Math.round(image.getHeight());
+	/**
+	 * Analyze an image, given by its rows. Only every step-th row is read, so that at most about 800 rows are read,
+	 * and the last row.
+	 *
+	 * @param width  the width of the image
+	 * @param height the height of the image
+	 * @param rows   supplies the rows
+	 * @return the report
+	 */
+	public static Report analyze(int width, int height, RowReader rows) {
+		var warnings = new ArrayList<String>();
 
 		// 1) Basic size checks
-		checkResolution(width, height, warn);
-
-		// Choose a sampling step so that we never sample more than about 800 points
-		// along the larger dimension.
-		int maxDim = Math.max(width, height);
-		int step = Math.max(1, maxDim / 800);
-
-		// Overall statistics
-		double totalSamples = 0;
-		int lightCount = 0;
-		int darkCount = 0;
-		int midCount = 0;
-		double sumBrightness = 0.0;
-
-		// For color statistics among dark pixels
-		int darkColoredCount = 0;
-
-		// For rough line thickness analysis (horizontal runs of dark pixels)
-		List<Integer> darkRunLengths = new ArrayList<>();
-		int tinyRunCount = 0;
-
-		for (int y = 0; y < height; y += step) {
-			int currentRun = 0;
-
-			for (int x = 0; x < width; x += step) {
-				Color c = reader.getColor(x, y);
-				double b = c.getBrightness();
-				double s = c.getSaturation();
-
-				sumBrightness += b;
-				totalSamples++;
-
-				boolean isDark = b < VERY_DARK;
-				boolean isLight = b > VERY_LIGHT;
-
-				if (isLight) {
-					lightCount++;
-					if (currentRun > 0) {
-						darkRunLengths.add(currentRun);
-						if (currentRun <= 2 * step) {
-							tinyRunCount++;
-						}
-						currentRun = 0;
-					}
-				} else if (isDark) {
-					darkCount++;
-					currentRun += step; // approximate run length in pixels
-					if (s > 0.3) {
-						darkColoredCount++;
-					}
-				} else {
-					midCount++;
-					if (currentRun > 0) {
-						darkRunLengths.add(currentRun);
-						if (currentRun <= 2 * step) {
-							tinyRunCount++;
-						}
-						currentRun = 0;
-					}
-				}
-			}
+		checkResolution(width, height, warnings);
 
-			// Close any run at the end of the row
-			if (currentRun > 0) {
-				darkRunLengths.add(currentRun);
-				if (currentRun <= 2 * step) {
-					tinyRunCount++;
+		var brightnessHistogram = new int[256];
+		if (width == 0 || height == 0) {
+			warnings.add("Image appears to be empty. Load a file that contains a visible phylogeny.");
+			return new Report(width, height, brightnessHistogram, 0, 0, 0, 0, 0, 0, 0, 0, 0, List.copyOf(warnings));
+		}
+
+		var step = Math.max(1, Math.max(width, height) / MAX_ROWS);
+
+		var coloredDarkCount = 0L;
+		var borderSamples = 0L;
+		var borderDarkCount = 0L;
+		var runLengths = new long[MAX_RUN_LENGTH + 2]; // last bin counts the longer runs
+
+		var buffer = new int[width];
+		var y = 0;
+		while (true) {
+			rows.read(y, buffer);
+			var borderRow = (y == 0 || y == height - 1);
+
+			var run = 0;
+			for (var x = 0; x < width; x++) {
+				var argb = buffer[x];
+				var r = (argb >> 16) & 0xFF;
+				var g = (argb >> 8) & 0xFF;
+				var b = argb & 0xFF;
+				var max = Math.max(r, Math.max(g, b));
+				brightnessHistogram[max]++;
+
+				var dark = (max < VERY_DARK);
+				if (dark) {
+					run++;
+					if (255 * (max - Math.min(r, Math.min(g, b))) > COLORED * max)
+						coloredDarkCount++;
+				} else if (run > 0) {
+					runLengths[Math.min(run, MAX_RUN_LENGTH + 1)]++;
+					run = 0;
+				}
+				if (borderRow || x == 0 || x == width - 1) {
+					borderSamples++;
+					if (dark)
+						borderDarkCount++;
 				}
 			}
+			if (run > 0)
+				runLengths[Math.min(run, MAX_RUN_LENGTH + 1)]++;
+
+			if (y == height - 1)
+				break;
+			y = Math.min(y + step, height - 1);
 		}
 
-		if (totalSamples == 0) {
-			warn.accept("Image appears to be empty. Load a file that contains a visible phylogeny.");
-			return;
+		var samples = 0L;
+		var lightCount = 0L;
+		var darkCount = 0L;
+		var sumBrightness = 0L;
+		for (var value = 0; value < 256; value++) {
+			var count = brightnessHistogram[value];
+			samples += count;
+			sumBrightness += (long) value * count;
+			if (value > VERY_LIGHT)
+				lightCount += count;
+			else if (value < VERY_DARK)
+				darkCount += count;
+		}
+
+		var lightFraction = lightCount / (double) samples;
+		var darkFraction = darkCount / (double) samples;
+		var averageBrightness = sumBrightness / (255.0 * samples);
+		var borderDarkFraction = borderDarkCount / (double) borderSamples;
+		var coloredDarkFraction = (darkCount > 0 ? coloredDarkCount / (double) darkCount : 0.0);
+
+		var darkRuns = 0L;
+		var crossingRuns = 0L;
+		for (var length = 1; length <= MAX_RUN_LENGTH + 1; length++) {
+			darkRuns += runLengths[length];
+			if (length <= MAX_RUN_LENGTH)
+				crossingRuns += runLengths[length];
 		}
+		var lineThickness = 0;
+		if (crossingRuns > 0) {
+			var cumulative = 0L;
+			while (2 * cumulative < crossingRuns)
+				cumulative += runLengths[++lineThickness];
+		}
+		var tinyRuns = 0L;
+		for (var length = 1; 2 * length < lineThickness; length++)
+			tinyRuns += runLengths[length];
+		var tinyRunFraction = (darkRuns > 0 ? tinyRuns / (double) darkRuns : 0.0);
 
-		double lightFraction = lightCount / totalSamples;
-		double darkFraction = darkCount / totalSamples;
-		double midFraction = midCount / totalSamples;
-		double avgBrightness = sumBrightness / totalSamples;
+		var report = new Report(width, height, brightnessHistogram, samples, lightFraction, darkFraction, averageBrightness, borderDarkFraction,
+				coloredDarkFraction, darkRuns, lineThickness, tinyRunFraction, warnings);
 
 		// 2) Background vs foreground checks
-		checkBackgroundAndContrast(lightFraction, darkFraction, midFraction, avgBrightness, warn);
+		checkBackgroundAndContrast(report, warnings);
 
 		// 3) Border checks: is the tree touching the margins?
-		checkBorders(reader, width, height, step, warn);
+		checkBorders(report, warnings);
 
 		// 4) Noise & line thickness checks
-		checkLineThicknessAndNoise(darkRunLengths, tinyRunCount, darkFraction, warn);
+		checkLineThicknessAndNoise(report, warnings);
 
 		// 5) Color usage in dark regions
-		checkColorUsageInDarkRegions(darkCount, darkColoredCount, warn);
+		checkColorUsageInDarkRegions(report, warnings);
+
+		return new Report(width, height, brightnessHistogram, samples, lightFraction, darkFraction, averageBrightness, borderDarkFraction,
+				coloredDarkFraction, darkRuns, lineThickness, tinyRunFraction, List.copyOf(warnings));
 	}
 
-	private static void checkResolution(int width, int height, Consumer<String> warn) {
+	private static void checkResolution(int width, int height, List<String> warnings) {
 		if (width < MIN_WIDTH || height < MIN_HEIGHT) {
-			warn.accept(String.format(
+			warnings.add(String.format(
 					"Image size is %dx%d pixels. This is quite small; the tree and labels may be hard to analyze. " +
 					"(Recommend at least %dx%d pixels).",
 					width, height, RECOMMENDED_MIN_WIDTH, RECOMMENDED_MIN_HEIGHT
 			));
 		} else if (width < RECOMMENDED_MIN_WIDTH || height < RECOMMENDED_MIN_HEIGHT) {
-			warn.accept(String.format(
+			warnings.add(String.format(
 					"Image size is %dx%d pixels. This is usable but somewhat small. " +
 					"(Recommend at least %dx%d pixels).",
 					width, height, RECOMMENDED_MIN_WIDTH, RECOMMENDED_MIN_HEIGHT
@@ -187,7 +318,7 @@ public final class PhyloImageAnalyzer {
 		}
 
 		if (width > TOO_LARGE_DIMENSION || height > TOO_LARGE_DIMENSION) {
-			warn.accept(String.format(
+			warnings.add(String.format(
 					"Image size is %dx%d pixels. This is very large and may cause problems. " +
 					"Downscale the image around 1200–2400 pixels on the longer side and reload.",
 					width, height
@@ -195,144 +326,85 @@ public final class PhyloImageAnalyzer {
 		}
 	}
 
-	private static void checkBackgroundAndContrast(double lightFraction,
-												   double darkFraction,
-												   double midFraction,
-												   double avgBrightness,
-												   Consumer<String> warn) {
+	private static void checkBackgroundAndContrast(Report report, List<String> warnings) {
 		// Expect most pixels to be very light (white background)
-		if (lightFraction < 0.5) {
-			warn.accept(String.format(
+		if (report.lightFraction() < 0.5) {
+			warnings.add(String.format(
 					"Only about %.0f%% of sampled pixels are very light. The background may not be white. " +
 					"Please increase brightness/contrast and reload.",
-					lightFraction * 100.0
+					report.lightFraction() * 100.0
 			));
 		}
 
 		// Expect a small but visible fraction of dark pixels (edges & labels)
-		if (darkFraction < 0.005) { // < 0.5%
-			warn.accept(String.format(
+		if (report.darkFraction() < 0.005) { // < 0.5%
+			warnings.add(String.format(
 					"Only about %.2f%% of sampled pixels are very dark. Phylogeny may be too faint or too thin. " +
 					"Ensure image has solid black or dark gray lines and consider increasing the image resolution.",
-					darkFraction * 100.0
+					report.darkFraction() * 100.0
 			));
-		} else if (darkFraction > 0.4) { // > 40%
-			warn.accept(String.format(
+		} else if (report.darkFraction() > 0.4) { // > 40%
+			warnings.add(String.format(
 					"About %.0f%% of sampled pixels are very dark. It looks like a dark background with light lines, " +
 					"or a very dense graphic. For best results, use a white background and dark edges/labels.",
-					darkFraction * 100.0
+					report.darkFraction() * 100.0
 			));
 		}
 
 		// Many mid-tone pixels might indicate low contrast or heavy anti-aliasing
-		if (midFraction > 0.5 && avgBrightness < 0.8 && avgBrightness > 0.2) {
-			warn.accept(String.format(
+		if (report.midFraction() > 0.5 && report.averageBrightness() < 0.8 && report.averageBrightness() > 0.2) {
+			warnings.add(String.format(
 					"A large fraction (≈%.0f%%) of pixels are mid-gray, suggesting low contrast. " +
 					"Increase contrast or export the tree as a high-contrast graphic (e.g. PNG with black lines on white background).",
-					midFraction * 100.0
+					report.midFraction() * 100.0
 			));
 		}
 	}
 
-	private static void checkBorders(PixelReader reader,
-									 int width,
-									 int height,
-									 int step,
-									 Consumer<String> warn) {
-		int borderSamples = 0;
-		int borderDark = 0;
-
-		// Top and bottom borders
-		for (int x = 0; x < width; x += step) {
-			Color top = reader.getColor(x, 0);
-			Color bottom = reader.getColor(x, height - 1);
-			if (top.getBrightness() < VERY_DARK) borderDark++;
-			if (bottom.getBrightness() < VERY_DARK) borderDark++;
-			borderSamples += 2;
-		}
-
-		// Left and getRight borders
-		for (int y = 0; y < height; y += step) {
-			Color left = reader.getColor(0, y);
-			Color right = reader.getColor(width - 1, y);
-			if (left.getBrightness() < VERY_DARK) borderDark++;
-			if (right.getBrightness() < VERY_DARK) borderDark++;
-			borderSamples += 2;
-		}
-
-		if (borderSamples == 0) {
-			return;
-		}
-
-		double borderDarkFraction = borderDark / (double) borderSamples;
-		if (borderDarkFraction > 0.25) {
-			warn.accept(String.format(
+	private static void checkBorders(Report report, List<String> warnings) {
+		if (report.borderDarkFraction() > 0.25) {
+			warnings.add(String.format(
 					"About %.0f%% of the border pixels are dark. Parts of the tree likely touch or cross the image edges. " +
 					"Please leave a white margin around the tree so that it is fully contained in the image.",
-					borderDarkFraction * 100.0
+					report.borderDarkFraction() * 100.0
 			));
 		}
 	}
 
-	private static void checkLineThicknessAndNoise(List<Integer> darkRunLengths,
-												   int tinyRunCount,
-												   double darkFraction,
-												   Consumer<String> warn) {
-		if (darkRunLengths.isEmpty()) {
+	private static void checkLineThicknessAndNoise(Report report, List<String> warnings) {
+		if (report.darkRuns() == 0) {
 			// If we also have a low darkFraction, this probably means nothing recognizable
-			if (darkFraction < 0.01) {
-				warn.accept("No clear dark lines detected. The tree might be missing, extremely faint, or in a color that is not very dark. " +
-							"Ensure the image has solid black edges on a white background.");
+			if (report.darkFraction() < 0.01) {
+				warnings.add("No clear dark lines detected. The tree might be missing, extremely faint, or in a color that is not very dark. " +
+							 "Ensure the image has solid black edges on a white background.");
 			}
 			return;
 		}
 
-		double sum = 0.0;
-		for (int len : darkRunLengths) {
-			sum += len;
-		}
-		double avgRunLength = sum / darkRunLengths.size();
-
-		// Tiny run fraction → noise/compression
-		double tinyFraction = darkRunLengths.isEmpty() ? 0.0 :
-				(double) tinyRunCount / darkRunLengths.size();
-
-		if (avgRunLength < 1.5) {
-			warn.accept(String.format(
-					"Estimated line thickness is about %.1f pixels. Lines may be very thin and close to 1 pixel wide. " +
-					"Consider increasing the stroke width or exporting at a higher resolution.",
-					avgRunLength
-			));
-		} else if (avgRunLength > 10.0) {
-			warn.accept(String.format(
-					"Estimated line thickness is about %.1f pixels. Lines may be too thick, so branch junctions are blurred together. " +
+		if (report.lineThickness() > 10.0) {
+			warnings.add(String.format(
+					"Estimated line thickness is about %.0f pixels. Lines may be too thick, so branch junctions are blurred together. " +
 					"Try reducing the stroke width or downscaling the image slightly.",
-					avgRunLength
+					report.lineThickness()
 			));
 		}
 
-		if (tinyFraction > 0.7 && darkFraction < 0.2) {
-			warn.accept(String.format(
+		if (report.tinyRunFraction() > 0.7 && report.darkFraction() < 0.2) {
+			warnings.add(String.format(
 					"Many small, isolated dark segments were detected (≈%.0f%% of dark runs). " +
 					"If this is due to noise or compression artifacts, please clean the image before use.",
-					tinyFraction * 100.0
+					report.tinyRunFraction() * 100.0
 			));
 		}
 	}
 
-	private static void checkColorUsageInDarkRegions(int darkCount,
-													 int darkColoredCount,
-													 Consumer<String> warn) {
-		if (darkCount <= 0) {
-			return;
-		}
-		double coloredFraction = darkColoredCount / (double) darkCount;
-		if (coloredFraction > 0.3) {
-			warn.accept(String.format(
+	private static void checkColorUsageInDarkRegions(Report report, List<String> warnings) {
+		if (report.coloredDarkFraction() > 0.3) {
+			warnings.add(String.format(
 					"About %.0f%% of dark pixels appear to be strongly colored rather than black/gray. " +
 					"The recognition works best if tree edges and labels are black or dark gray on a white background.",
-					coloredFraction * 100.0
+					report.coloredDarkFraction() * 100.0
 			));
 		}
 	}
-}
\ No newline at end of file
+}
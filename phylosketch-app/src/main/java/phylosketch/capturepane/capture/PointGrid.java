@@ -0,0 +1,146 @@
+/*
+ * PointGrid.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.capturepane.capture;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * spatial hash of integer points, each carrying an int tag, for fixed-radius proximity queries
+ * Daniel Huson, 10.2026
+ */
+public class PointGrid {
+	private final double cellSize;
+	private final HashMap<Long, IntArrayList> cells = new HashMap<>();
+	private final IntArrayList xs = new IntArrayList();
+	private final IntArrayList ys = new IntArrayList();
+	private final IntArrayList tags = new IntArrayList();
+
+	/**
+	 * constructor
+	 *
+	 * @param cellSize the cell size, best set to the typical query distance
+	 */
+	public PointGrid(double cellSize) {
+		this.cellSize = Math.max(1, cellSize);
+	}
+
+	/**
+	 * creates a grid containing the given points, all with tag 0
+	 */
+	public static PointGrid of(Collection<Point> points, double cellSize) {
+		var grid = new PointGrid(cellSize);
+		grid.addAll(points, 0);
+		return grid;
+	}
+
+	public void add(Point p, int tag) {
+		var index = xs.size();
+		xs.add(p.x());
+		ys.add(p.y());
+		tags.add(tag);
+		cells.computeIfAbsent(key(cell(p.x()), cell(p.y())), k -> new IntArrayList(4)).add(index);
+	}
+
+	public void addAll(Collection<Point> points, int tag) {
+		for (var p : points) {
+			add(p, tag);
+		}
+	}
+
+	public int size() {
+		return xs.size();
+	}
+
+	/**
+	 * is there a point at distance at most maxDistance?
+	 */
+	public boolean hasPointWithin(Point p, double maxDistance) {
+		return findWithin(p, maxDistance, false, null);
+	}
+
+	/**
+	 * is there a point at distance less than minDistance?
+	 */
+	public boolean hasPointCloserThan(Point p, double minDistance) {
+		return findWithin(p, minDistance, true, null);
+	}
+
+	/**
+	 * does every one of the given points have a point of this grid at distance at most maxDistance?
+	 */
+	public boolean containsAll(Collection<Point> points, double maxDistance) {
+		for (var p : points) {
+			if (!hasPointWithin(p, maxDistance))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * reports the tag of every point at distance at most maxDistance. Tags are reported once per point, so may be repeated.
+	 */
+	public void forEachTagWithin(Point p, double maxDistance, IntConsumer consumer) {
+		findWithin(p, maxDistance, false, consumer);
+	}
+
+	/**
+	 * visits all points within distance, stops at the first one, if no consumer is given
+	 *
+	 * @return true, if some point was found
+	 */
+	private boolean findWithin(Point p, double distance, boolean strict, IntConsumer consumer) {
+		var found = false;
+		var x0 = cell(p.x() - distance);
+		var x1 = cell(p.x() + distance);
+		var y0 = cell(p.y() - distance);
+		var y1 = cell(p.y() + distance);
+		for (var cx = x0; cx <= x1; cx++) {
+			for (var cy = y0; cy <= y1; cy++) {
+				var list = cells.get(key(cx, cy));
+				if (list != null) {
+					for (var i = 0; i < list.size(); i++) {
+						var index = list.get(i);
+						var dx = xs.get(index) - p.x();
+						var dy = ys.get(index) - p.y();
+						var d = Math.sqrt((double) dx * dx + (double) dy * dy);
+						if (strict ? d < distance : d <= distance) {
+							if (consumer == null)
+								return true;
+							consumer.accept(tags.get(index));
+							found = true;
+						}
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	private int cell(double coordinate) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	private static long key(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+}
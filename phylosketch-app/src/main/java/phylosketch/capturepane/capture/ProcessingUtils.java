@@ -20,12 +20,8 @@
 
 package phylosketch.capturepane.capture;
 
-import jloda.util.CanceledException;
-import jloda.util.progress.ProgressListener;
-
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Predicate;
 
 /**
  * processing utils
@@ -33,105 +29,35 @@ import java.util.function.Predicate;
  */
 public class ProcessingUtils {
 
+	/**
+	 * greedily keeps points in the given order, skipping any point that is closer than minDistance to a point already kept
+	 */
 	public static List<Point> removeClosePoints(List<Point> points, double minDistance) {
 		var list = new ArrayList<Point>();
+		var grid = new PointGrid(minDistance);
 		for (var point : points) {
-			if (list.stream().noneMatch(other -> point.distance(other) < minDistance)) {
+			if (!grid.hasPointCloserThan(point, minDistance)) {
 				list.add(point);
+				grid.add(point, 0);
 			}
 		}
 		return list;
 	}
 
-	private static final int ID_OFFSET = 10;
-
-	public static List<Segment> findPaths(ProgressListener progress, int[][] matrix, List<Point> points) throws CanceledException {
-		var segments = new ArrayList<Segment>();
-
-		var maxD = 5;
-		{
-			var id = ID_OFFSET;
-			for (Point p : points) {
-				matrix[p.y()][p.x()] = id;
-				for (var d = 1; d < maxD; d++)
-					for (var q : neighborsAll(matrix, p, d)) {
-						matrix[q.y()][q.x()] = id;
-					}
-				id++;
-			}
-		}
-
-		progress.setMaximum(points.size());
-		for (var start : points) {
-			var startId = matrix[start.y()][start.x()];
-			// System.err.println("start " + start);
-
-			for (var neighbor : neighbors(matrix, start, maxD, a -> a == 1)) {
-				// System.err.println("start " + startId + " neighbor: " + neighbor);
-					var segment = new Segment();
-					segment.points().add(start);
-				var endId = getPointsRec(progress, startId, neighbor, matrix, segment.points());
-				// System.err.println("end " + startId + ": " + endId);
-				if (endId > 0) {
-					var endPoint = points.get(endId - ID_OFFSET);
-					segment.points().add(endPoint);
-					if (segments.stream().noneMatch(s -> s.same(segment, 3)))
-						segments.add(segment);
-					}
-				}
-			progress.incrementProgress();
-		}
-		System.err.println(points.size() + " -> " + segments.size());
-		return segments;
-	}
-
-	private static int getPointsRec(ProgressListener progress, int startId, Point p, int[][] matrix, ArrayList<Point> path) throws CanceledException {
-		progress.checkForCancel();
-		var x = p.x();
-		var y = p.y();
-
-		var m = matrix[y][x];
-		if (m == 1) {
-			matrix[y][x] = 2;
-			path.add(p);
-			for (var depth = 1; depth <= 2; depth++) {
-				for (var q : neighbors(matrix, p, depth, a -> a > 0 && a != 2 && a != startId)) {
-					var endId = getPointsRec(progress, startId, q, matrix, path);
-					if (endId > 0)
-						return endId;
-				}
-			}
-			path.remove(p);
-			if (false)
-				matrix[y][x] = 1;
-		} else if (m > 2 && m != startId) {
-			return m;
-		}
-		return 0;
-	}
-
-	public static List<Point> neighborsAll(int[][] matrix, Point point, int distance) {
-		return neighbors(matrix, point, distance, m -> true);
-	}
-
-
-	public static List<Point> neighbors(int[][] matrix, Point point, int distance, Predicate<Integer> acceptValue) {
-		var height = matrix.length;
-		var width = matrix[0].length;
+	/**
+	 * gets all foreground pixels on the square ring of the given distance around a point
+	 */
+	public static List<Point> neighborsValue(BitRaster matrix, Point point, int distance) {
 		var x = point.x();
 		var y = point.y();
 
 		var list = new ArrayList<Point>();
 		for (var i = -distance; i <= distance; i++) {
 			for (var j = -distance; j <= distance; j++) {
-				if ((i == -distance || i == distance || j == -distance || j == distance) && (x + i) >= 0 && (x + i) < width && (y + j) >= 0 && (y + j) < height && acceptValue.test(matrix[y + j][x + i]))
+				if ((i == -distance || i == distance || j == -distance || j == distance) && matrix.getSafe(x + i, y + j))
 					list.add(new Point(x + i, y + j));
 			}
 		}
 		return list;
 	}
-
-	public static List<Point> neighborsValue(int[][] matrix, Point point, int distance) {
-		return neighbors(matrix, point, distance, m -> m == 1);
-	}
 }
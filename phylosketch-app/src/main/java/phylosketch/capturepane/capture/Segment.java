@@ -35,6 +35,12 @@ import java.util.List;
  * @param points
  */
 public record Segment(ArrayList<Point> points) {
+	/**
+	 * pairs of segments with at most this many pairs of points are compared by a linear scan, as building a point grid
+	 * costs more for them
+	 */
+	private static final int LINEAR_SCAN_LIMIT = 1024;
+
 	public Segment() {
 		this(new ArrayList<>());
 	}
@@ -43,22 +49,83 @@ public record Segment(ArrayList<Point> points) {
 		return this.contains(that, epsilon) && that.contains(this, epsilon);
 	}
 
+	/**
+	 * does every point of that segment lie within distance epsilon of some point of this segment?
+	 */
 	public boolean contains(Segment that, double epsilon) {
-		for (var p : that.points) {
-			if (this.points.stream().noneMatch(q -> p.distance(q) <= epsilon))
-				return false;
+		if (that.points.isEmpty())
+			return true;
+		if (this.points.isEmpty() || !this.boundsNear(that, epsilon))
+			return false;
+		if ((long) this.points.size() * that.points.size() <= LINEAR_SCAN_LIMIT) {
+			for (var p : that.points) {
+				if (!hasPointWithin(p, epsilon))
+					return false;
+			}
+			return true;
 		}
-		return true;
+		return createPointGrid(epsilon).containsAll(that.points, epsilon);
 	}
 
+	/**
+	 * does some point of this segment lie within maxDistance of some point of that segment?
+	 */
 	public boolean proximal(Segment that, double maxDistance) {
+		if (this.points.isEmpty() || that.points.isEmpty() || !this.boundsNear(that, maxDistance))
+			return false;
+		if ((long) this.points.size() * that.points.size() <= LINEAR_SCAN_LIMIT) {
+			for (var p : this.points) {
+				if (that.hasPointWithin(p, maxDistance))
+					return true;
+			}
+			return false;
+		}
+		var grid = that.createPointGrid(maxDistance);
 		for (var p : this.points) {
-			if (that.points.stream().anyMatch(q -> p.distance(q) <= maxDistance))
+			if (grid.hasPointWithin(p, maxDistance))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean hasPointWithin(Point p, double maxDistance) {
+		for (var q : points) {
+			if (p.distance(q) <= maxDistance)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * do the bounding boxes of the two segments, enlarged by distance, intersect? Computed without allocating
+	 */
+	private boolean boundsNear(Segment that, double distance) {
+		var xmin = Integer.MAX_VALUE;
+		var xmax = Integer.MIN_VALUE;
+		var ymin = Integer.MAX_VALUE;
+		var ymax = Integer.MIN_VALUE;
+		for (var p : that.points) {
+			xmin = Math.min(xmin, p.x());
+			xmax = Math.max(xmax, p.x());
+			ymin = Math.min(ymin, p.y());
+			ymax = Math.max(ymax, p.y());
+		}
+		for (var p : points) {
+			if (p.x() >= xmin - distance && p.x() <= xmax + distance && p.y() >= ymin - distance && p.y() <= ymax + distance)
 				return true;
 		}
 		return false;
 	}
 
+	/**
+	 * creates a spatial hash of the points of this segment
+	 *
+	 * @param cellSize the cell size, best set to the query distance
+	 */
+	public PointGrid createPointGrid(double cellSize) {
+		return PointGrid.of(points, cellSize);
+	}
+
 	public boolean proximal(Point2D point, double maxDistance) {
 		return points.stream().anyMatch(p -> point.distance(p.point2D()) <= maxDistance);
 	}
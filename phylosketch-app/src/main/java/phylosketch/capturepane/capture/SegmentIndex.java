@@ -0,0 +1,98 @@
+/*
+ * SegmentIndex.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.capturepane.capture;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * index of segments for fast detection of duplicate, or contained, segments
+ * <p>
+ * A segment can only be contained in an indexed segment that has a point close to its first point,
+ * so only such candidates are compared, each using its own point grid.
+ * Daniel Huson, 10.2026
+ */
+public class SegmentIndex {
+	private final double epsilon;
+	private final PointGrid allPoints;
+	private final ArrayList<Segment> segments = new ArrayList<>();
+	private final ArrayList<PointGrid> grids = new ArrayList<>();
+
+	/**
+	 * constructor
+	 *
+	 * @param epsilon the maximum distance at which two points are considered the same
+	 */
+	public SegmentIndex(double epsilon) {
+		this.epsilon = epsilon;
+		this.allPoints = new PointGrid(epsilon);
+	}
+
+	public void add(Segment segment) {
+		allPoints.addAll(segment.points(), segments.size());
+		segments.add(segment);
+		grids.add(PointGrid.of(segment.points(), epsilon));
+	}
+
+	/**
+	 * is there an indexed segment that contains the given one, see {@link Segment#contains(Segment, double)}?
+	 */
+	public boolean containsSuperSegment(Segment segment) {
+		if (segment.points().isEmpty())
+			return !segments.isEmpty();
+		for (var c : candidates(segment)) {
+			if (grids.get(c).containsAll(segment.points(), epsilon))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * is there an indexed segment that is the same as the given one, see {@link Segment#same(Segment, double)}?
+	 */
+	public boolean containsSame(Segment segment) {
+		if (segment.points().isEmpty())
+			return segments.stream().anyMatch(s -> s.points().isEmpty());
+		PointGrid grid = null;
+		for (var c : candidates(segment)) {
+			if (grids.get(c).containsAll(segment.points(), epsilon)) {
+				if (grid == null)
+					grid = PointGrid.of(segment.points(), epsilon);
+				if (grid.containsAll(segments.get(c).points(), epsilon))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * indices of all indexed segments that have a point close to the first point of the given segment
+	 */
+	private Iterable<Integer> candidates(Segment segment) {
+		var result = new BitSet();
+		allPoints.forEachTagWithin(segment.first(), epsilon, result::set);
+		return result.stream()::iterator;
+	}
+
+	public int size() {
+		return segments.size();
+	}
+}
@@ -21,73 +21,140 @@
 package phylosketch.capturepane.capture;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * connected component labelling and region analysis of binary rasters
+ * Components are 4-connected, labelled 1, 2, ... in order of their first pixel in row-major order, 0 is background.
+ * Daniel Huson, 10.2026
+ */
 public class ShapeDetection {
 
-	public static List<Region> analyzeRegions(int[][] labels) {
-		List<Region> regions = new ArrayList<>();
-		int height = labels.length;
-		int width = labels[0].length;
+	/**
+	 * determines all regions of the given label plane and keeps those that are roughly square and mostly filled
+	 *
+	 * @param labels the labels, as computed by {@link #connectedComponents(BitRaster)}
+	 * @return regions, by increasing label
+	 */
+	public static List<Region> analyzeRegions(IntRaster labels) {
+		var regions = computeRegions(labels);
+
+		var list = new ArrayList<Region>();
+		for (var label = 1; label < regions.length; label++) {
+			var r = regions[label];
+			if (r != null) {
+				double aspectRatio = r.getAspectRatio();
+				double blackProportion = r.getBlackPixelProportion();
+				if (!(aspectRatio > 5.0 || aspectRatio < 0.2 || blackProportion < 0.5)) // Adjust thresholds as needed
+					list.add(r);
+			}
+		}
+		return list;
+	}
 
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				int label = labels[y][x];
+	/**
+	 * computes the region statistics of all labels
+	 *
+	 * @param labels the label plane
+	 * @return array indexed by label, entry 0 and entries of unused labels are null
+	 */
+	public static Region[] computeRegions(IntRaster labels) {
+		var width = labels.getWidth();
+		var height = labels.getHeight();
+		var data = labels.getData();
+
+		var maxLabel = 0;
+		for (var value : data) {
+			maxLabel = Math.max(maxLabel, value);
+		}
+
+		var regions = new Region[maxLabel + 1];
+		for (var y = 0; y < height; y++) {
+			var row = labels.index(0, y);
+			for (var x = 0; x < width; x++) {
+				var label = data[row + x];
 				if (label > 0) {
-					// Find or create the region for this label
-					Region region = regions.stream().filter(r -> r.label == label).findFirst().orElse(null);
+					var region = regions[label];
 					if (region == null) {
 						region = new Region(label);
-						regions.add(region);
+						regions[label] = region;
 					}
-					// Update the region properties
 					region.update(x, y);
 				}
 			}
 		}
-
-		// Filter regions based on aspect ratio and black pixel proportion
-		regions.removeIf(r -> {
-			double aspectRatio = r.getAspectRatio();
-			double blackProportion = r.getBlackPixelProportion();
-			return aspectRatio > 5.0 || aspectRatio < 0.2 || blackProportion < 0.5; // Adjust thresholds as needed
-		});
-
 		return regions;
 	}
 
-	// Perform Connected Component Analysis (Label connected regions)
-	public static int[][] connectedComponents(int[][] binary) {
-		int height = binary.length;
-		int width = binary[0].length;
-		int[][] labels = new int[height][width];
-		int label = 1;
-
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				if (binary[y][x] == 1 && labels[y][x] == 0) {
-					floodFill(binary, labels, x, y, label++);
+	/**
+	 * labels the 4-connected components of the foreground, using two passes and union-find on provisional labels
+	 *
+	 * @param binary the binary raster
+	 * @return the label plane
+	 */
+	public static IntRaster connectedComponents(BitRaster binary) {
+		var width = binary.getWidth();
+		var height = binary.getHeight();
+		var labels = new IntRaster(width, height);
+		var data = labels.getData();
+
+		// first pass: provisional labels, recording equivalences between the labels above and to the left
+		var parent = new int[1024];
+		var count = 0;
+		for (var y = 0; y < height; y++) {
+			var row = labels.index(0, y);
+			var above = (y > 0 ? labels.index(0, y - 1) : -1);
+			for (var x = 0; x < width; x++) {
+				if (binary.get(x, y)) {
+					var left = (x > 0 ? data[row + x - 1] : 0);
+					var up = (above >= 0 ? data[above + x] : 0);
+					if (left == 0 && up == 0) {
+						if (++count == parent.length)
+							parent = Arrays.copyOf(parent, 2 * parent.length);
+						parent[count] = count;
+						data[row + x] = count;
+					} else if (left == 0) {
+						data[row + x] = up;
+					} else {
+						data[row + x] = left;
+						if (up != 0 && up != left)
+							union(parent, left, up);
+					}
 				}
 			}
 		}
+
+		// second pass: replace provisional labels by final ones, numbered by first appearance
+		var finalLabel = new int[count + 1];
+		var next = 0;
+		for (var i = 0; i < data.length; i++) {
+			if (data[i] != 0) {
+				var root = find(parent, data[i]);
+				if (finalLabel[root] == 0)
+					finalLabel[root] = ++next;
+				data[i] = finalLabel[root];
+			}
+		}
 		return labels;
 	}
 
-	// Flood fill algorithm for labeling connected regions
-	private static void floodFill(int[][] binary, int[][] labels, int x, int y, int label) {
-		int height = binary.length;
-		int width = binary[0].length;
-
-		if (x < 0 || y < 0 || x >= width || y >= height) return; // Out of bounds
-		if (binary[y][x] == 0 || labels[y][x] != 0) return;      // Already labeled or background
-
-		labels[y][x] = label;
+	private static int find(int[] parent, int a) {
+		while (parent[a] != a) {
+			parent[a] = parent[parent[a]];
+			a = parent[a];
+		}
+		return a;
+	}
 
-		// Recursively fill neighboring pixels
-		floodFill(binary, labels, x + 1, y, label);
-		floodFill(binary, labels, x - 1, y, label);
-		floodFill(binary, labels, x, y + 1, label);
-		floodFill(binary, labels, x, y - 1, label);
+	private static void union(int[] parent, int a, int b) {
+		a = find(parent, a);
+		b = find(parent, b);
+		// keep the smaller label as root
+		if (a < b)
+			parent[b] = a;
+		else if (b < a)
+			parent[a] = b;
 	}
 
 	// Helper class to represent a connected region
@@ -113,6 +180,30 @@ public class ShapeDetection {
 			blackPixelCount++; // Increment black pixel count for each pixel in the region
 		}
 
+		public int getLabel() {
+			return label;
+		}
+
+		public int getMinX() {
+			return minX;
+		}
+
+		public int getMinY() {
+			return minY;
+		}
+
+		public int getMaxX() {
+			return maxX;
+		}
+
+		public int getMaxY() {
+			return maxY;
+		}
+
+		public int getBlackPixelCount() {
+			return blackPixelCount;
+		}
+
 		double getAspectRatio() {
 			int width = maxX - minX + 1;
 			int height = maxY - minY + 1;
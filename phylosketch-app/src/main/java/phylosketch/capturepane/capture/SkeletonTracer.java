@@ -0,0 +1,237 @@
+/*
+ * SkeletonTracer.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.capturepane.capture;
+
+import jloda.util.CanceledException;
+import jloda.util.progress.ProgressListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * traces the skeleton into segments between end points and junctions
+ * <p>
+ * The points are the vertices of the skeleton graph: each claims the square of radius 4 around itself in a label plane.
+ * From each point, chains of unvisited skeleton pixels are followed depth-first, looking at the ring of distance 1, then 2,
+ * around each pixel, until the area of another point is reached, which gives an edge.
+ * The depth-first search uses an explicit stack, so edges of any length can be traced.
+ * Daniel Huson, 10.2026
+ */
+public class SkeletonTracer {
+	private static final int UNVISITED = 1;
+	private static final int VISITED = 2;
+	private static final int ID_OFFSET = 10;
+	/**
+	 * radius of the area claimed by a point
+	 */
+	private static final int POINT_RADIUS = 4;
+	/**
+	 * distance of the ring around a point on which chains start
+	 */
+	private static final int START_DISTANCE = POINT_RADIUS + 1;
+
+	private final ProgressListener progress;
+	private final IntRaster labels;
+	private final int width;
+	private final int height;
+
+	// the search stack: one frame per pixel on the current path, each with a range of candidate pixels to visit next
+	private int[] framePixel = new int[256];
+	private int[] frameDepth = new int[256];
+	private int[] frameCandidatesStart = new int[256];
+	private int[] frameCandidatesPos = new int[256];
+	private int[] frameCandidatesEnd = new int[256];
+	private int frames;
+
+	// candidate pixels of all frames, stacked
+	private int[] candidates = new int[1024];
+	private int candidatesSize;
+
+	// id of the point from which the current chain is traced
+	private int startId;
+
+	private SkeletonTracer(ProgressListener progress, BitRaster skeleton) {
+		this.progress = progress;
+		this.labels = IntRaster.fromMask(skeleton, UNVISITED);
+		this.width = skeleton.getWidth();
+		this.height = skeleton.getHeight();
+	}
+
+	/**
+	 * find paths between the given points along the skeleton
+	 *
+	 * @param progress progress listener
+	 * @param skeleton the skeleton, is not modified
+	 * @param points   the end and branch points
+	 * @return segments connecting points
+	 */
+	public static List<Segment> apply(ProgressListener progress, BitRaster skeleton, List<Point> points) throws CanceledException {
+		return new SkeletonTracer(progress, skeleton).trace(points);
+	}
+
+	private List<Segment> trace(List<Point> points) throws CanceledException {
+		var segments = new ArrayList<Segment>();
+		var segmentIndex = new SegmentIndex(3);
+
+		for (var i = 0; i < points.size(); i++) {
+			claimArea(points.get(i), ID_OFFSET + i);
+		}
+
+		progress.setMaximum(points.size());
+		progress.setProgress(0);
+		for (var start : points) {
+			startId = labels.get(start.x(), start.y());
+
+			// chains start at unvisited pixels just outside of the area of the start point
+			frames = 0;
+			candidatesSize = 0;
+			pushRing(start.x() + start.y() * width, START_DISTANCE, true);
+			var starts = Arrays.copyOf(candidates, candidatesSize);
+
+			for (var pixel : starts) {
+				progress.checkForCancel();
+				var segment = new Segment();
+				segment.points().add(start);
+				var endId = traceChain(pixel, segment.points());
+				if (endId > 0) {
+					var endPoint = points.get(endId - ID_OFFSET);
+					segment.points().add(endPoint);
+					if (!segmentIndex.containsSame(segment)) {
+						segments.add(segment);
+						segmentIndex.add(segment);
+					}
+				}
+			}
+			progress.incrementProgress();
+		}
+		return segments;
+	}
+
+	/**
+	 * labels all pixels in the square of radius POINT_RADIUS around the point by its id
+	 */
+	private void claimArea(Point p, int id) {
+		var xMin = Math.max(0, p.x() - POINT_RADIUS);
+		var xMax = Math.min(width - 1, p.x() + POINT_RADIUS);
+		var yMin = Math.max(0, p.y() - POINT_RADIUS);
+		var yMax = Math.min(height - 1, p.y() + POINT_RADIUS);
+		for (var y = yMin; y <= yMax; y++) {
+			for (var x = xMin; x <= xMax; x++) {
+				labels.set(x, y, id);
+			}
+		}
+	}
+
+	/**
+	 * follows unvisited skeleton pixels from the given pixel, depth first, until the area of a point other than the start is reached.
+	 * Pixels visited are marked permanently, the pixels of the successful path are added to the path.
+	 *
+	 * @return the id of the point reached, or 0
+	 */
+	private int traceChain(int pixel, ArrayList<Point> path) {
+		var data = labels.getData();
+		if (data[pixel] != UNVISITED)
+			return 0;
+
+		frames = 0;
+		candidatesSize = 0;
+		enter(pixel, path);
+
+		while (frames > 0) {
+			var top = frames - 1;
+			if (frameCandidatesPos[top] < frameCandidatesEnd[top]) {
+				var next = candidates[frameCandidatesPos[top]++];
+				var label = data[next];
+				if (label == UNVISITED)
+					enter(next, path);
+				else if (label > VISITED && label != startId)
+					return label;
+			} else if (frameDepth[top] == 1) {
+				// all pixels at distance 1 are done, now try those at distance 2
+				frameDepth[top] = 2;
+				candidatesSize = frameCandidatesStart[top];
+				pushRing(framePixel[top], 2, false);
+				frameCandidatesPos[top] = frameCandidatesStart[top];
+				frameCandidatesEnd[top] = candidatesSize;
+			} else {
+				// dead end
+				path.remove(path.size() - 1);
+				candidatesSize = frameCandidatesStart[top];
+				frames--;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * marks a pixel as visited, adds it to the path and pushes a frame for it
+	 */
+	private void enter(int pixel, ArrayList<Point> path) {
+		labels.getData()[pixel] = VISITED;
+		path.add(new Point(pixel % width, pixel / width));
+
+		if (frames == framePixel.length) {
+			var length = 2 * frames;
+			framePixel = Arrays.copyOf(framePixel, length);
+			frameDepth = Arrays.copyOf(frameDepth, length);
+			frameCandidatesStart = Arrays.copyOf(frameCandidatesStart, length);
+			frameCandidatesPos = Arrays.copyOf(frameCandidatesPos, length);
+			frameCandidatesEnd = Arrays.copyOf(frameCandidatesEnd, length);
+		}
+		framePixel[frames] = pixel;
+		frameDepth[frames] = 1;
+		frameCandidatesStart[frames] = candidatesSize;
+		frameCandidatesPos[frames] = candidatesSize;
+		pushRing(pixel, 1, false);
+		frameCandidatesEnd[frames] = candidatesSize;
+		frames++;
+	}
+
+	/**
+	 * pushes the pixels on the square ring around the given pixel onto the candidate stack,
+	 * column by column, as long as they are unvisited skeleton pixels (or, unless onlyUnvisited is set,
+	 * belong to the area of a point other than the start point)
+	 */
+	private void pushRing(int pixel, int distance, boolean onlyUnvisited) {
+		var data = labels.getData();
+		var x = pixel % width;
+		var y = pixel / width;
+		for (var i = -distance; i <= distance; i++) {
+			var px = x + i;
+			if (px < 0 || px >= width)
+				continue;
+			var step = (i == -distance || i == distance ? 1 : 2 * distance);
+			for (var j = -distance; j <= distance; j += step) {
+				var py = y + j;
+				if (py < 0 || py >= height)
+					continue;
+				var index = py * width + px;
+				var label = data[index];
+				if (onlyUnvisited ? label == UNVISITED : label > 0 && label != VISITED && label != startId) {
+					if (candidatesSize == candidates.length)
+						candidates = Arrays.copyOf(candidates, 2 * candidatesSize);
+					candidates[candidatesSize++] = index;
+				}
+			}
+		}
+	}
+}
@@ -20,45 +20,161 @@
 
 package phylosketch.capturepane.capture;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Zhang-Suen thinning of a binary raster
+ * <p>
+ * Removability of a pixel only depends on its 8-neighbour code, so both sub-iterations are decided by table lookup.
+ * The first pass visits all border pixels, later passes only visit the foreground neighbours of pixels removed in the
+ * two preceding sub-iterations, as no other pixel can have changed status. Candidates are evaluated in parallel,
+ * removals are then applied sequentially, so the result is identical to the classic full-scan implementation.
+ * Daniel Huson, 10.2026
+ */
 public class Skeletonization {
-	public static void apply(int[][] matrix) {
-		var pixelsChanged = false;
+	private static final int MAX_ITERATIONS = 100;
+	/**
+	 * below this number of candidates, evaluation is done on the calling thread
+	 */
+	private static final int PARALLEL_THRESHOLD = 8192;
+
+	private static final boolean[] REMOVABLE_FIRST = createTable(true);
+	private static final boolean[] REMOVABLE_SECOND = createTable(false);
+
+	/**
+	 * thins the given raster in place
+	 *
+	 * @param matrix the raster
+	 */
+	public static void apply(BitRaster matrix) {
+		var width = matrix.getWidth();
+		var height = matrix.getHeight();
+		if (width < 3 || height < 3)
+			return;
+
+		// status of a pixel in a given sub-iteration only changes when one of its neighbours is removed,
+		// so after the first two sub-iterations, we only need to look at neighbours of recently removed pixels
+		var queued = new BitRaster(width, height);
+		var candidates = findBorderPixels(matrix);
+		var removedFirst = removePixels(matrix, candidates, REMOVABLE_FIRST);
+		candidates = collectCandidates(matrix, queued, candidates, removedFirst);
+		var removedSecond = removePixels(matrix, candidates, REMOVABLE_SECOND);
+
 		var count = 0;
-		do {
-			pixelsChanged |= thinningIteration(matrix, true);
-			pixelsChanged |= thinningIteration(matrix, false);
-		} while (pixelsChanged && count++ < 100);
+		while ((removedFirst.length > 0 || removedSecond.length > 0) && count++ < MAX_ITERATIONS) {
+			removedFirst = removePixels(matrix, collectCandidates(matrix, queued, removedFirst, removedSecond), REMOVABLE_FIRST);
+			removedSecond = removePixels(matrix, collectCandidates(matrix, queued, removedSecond, removedFirst), REMOVABLE_SECOND);
+		}
 	}
 
-	private static boolean thinningIteration(int[][] matrix, boolean firstSubIteration) {
-		var pixelsChanged = false;
-		var height = matrix.length;
-		var width = matrix[0].length;
+	/**
+	 * determines all interior foreground pixels that have at least one background neighbour, as packed y*width+x indices
+	 */
+	private static int[] findBorderPixels(BitRaster matrix) {
+		var width = matrix.getWidth();
+		var height = matrix.getHeight();
+		var bands = Math.max(1, Math.min(height - 2, (int) ((long) width * height / PARALLEL_THRESHOLD)));
+		var rowsPerBand = (height - 2 + bands - 1) / bands;
 
-		int[][] marker = new int[height][width];
+		var lists = new ArrayList<IntArrayList>(bands);
+		for (var b = 0; b < bands; b++)
+			lists.add(new IntArrayList());
 
-			for (int y = 1; y < height - 1; y++) {
-				for (int x = 1; x < width - 1; x++) {
-					if (matrix[y][x] == 1 && isRemovable(matrix, x, y, firstSubIteration)) {
-						marker[y][x] = 1;
-						pixelsChanged = true;
-					}
+		IntStream.range(0, bands).parallel().forEach(b -> {
+			var list = lists.get(b);
+			var yEnd = Math.min(height - 1, 1 + (b + 1) * rowsPerBand);
+			for (var y = 1 + b * rowsPerBand; y < yEnd; y++) {
+				for (var x = 1; x < width - 1; x++) {
+					if (matrix.get(x, y) && matrix.neighborCode(x, y) != 0xFF)
+						list.add(y * width + x);
 				}
 			}
+		});
+		return IntArrayList.concat(lists).toArray();
+	}
 
-			for (int y = 1; y < height - 1; y++) {
-				for (int x = 1; x < width - 1; x++) {
-					if (marker[y][x] == 1) {
-						matrix[y][x] = 0;
+	/**
+	 * collects the foreground pixels contained in, or adjacent to, any of the given pixels, without duplicates
+	 */
+	private static int[] collectCandidates(BitRaster matrix, BitRaster queued, int[] pixels1, int[] pixels2) {
+		var width = matrix.getWidth();
+		var height = matrix.getHeight();
+		// sized to the given pixels, whose neighbourhoods mostly overlap, and grown if needed
+		var result = new IntArrayList(Math.max(16, pixels1.length + pixels2.length));
+		for (var pixels : List.of(pixels1, pixels2)) {
+			for (var p : pixels) {
+				var x0 = p % width;
+				var y0 = p / width;
+				for (var y = Math.max(1, y0 - 1); y <= Math.min(height - 2, y0 + 1); y++) {
+					for (var x = Math.max(1, x0 - 1); x <= Math.min(width - 2, x0 + 1); x++) {
+						if (matrix.get(x, y) && !queued.get(x, y)) {
+							queued.set(x, y);
+							result.add(y * width + x);
+						}
+					}
 				}
 			}
 		}
+		var candidates = result.toArray();
+		for (var p : candidates) {
+			queued.clear(p % width, p / width);
+		}
+		return candidates;
+	}
+
+	/**
+	 * removes all candidates that are removable in the current sub-iteration, as decided on the state before any removal
+	 *
+	 * @return the removed pixels
+	 */
+	private static int[] removePixels(BitRaster matrix, int[] candidates, boolean[] removable) {
+		var width = matrix.getWidth();
+		int[] removed;
+		if (candidates.length < PARALLEL_THRESHOLD) {
+			removed = findRemovable(matrix, candidates, 0, candidates.length, removable).toArray();
+		} else {
+			var chunks = (candidates.length + PARALLEL_THRESHOLD - 1) / PARALLEL_THRESHOLD;
+			var lists = IntStream.range(0, chunks).parallel()
+					.mapToObj(c -> findRemovable(matrix, candidates, c * PARALLEL_THRESHOLD, Math.min(candidates.length, (c + 1) * PARALLEL_THRESHOLD), removable))
+					.toList();
+			removed = IntArrayList.concat(lists).toArray();
+		}
+		// bits of neighbouring pixels share words, so clear sequentially
+		for (var p : removed) {
+			matrix.clear(p % width, p / width);
+		}
+		return removed;
+	}
+
+	private static IntArrayList findRemovable(BitRaster matrix, int[] candidates, int start, int end, boolean[] removable) {
+		var width = matrix.getWidth();
+		var list = new IntArrayList();
+		for (var i = start; i < end; i++) {
+			var p = candidates[i];
+			if (removable[matrix.neighborCode(p % width, p / width)])
+				list.add(p);
+		}
+		return list;
+	}
 
-		return pixelsChanged;
+	/**
+	 * for each 8-neighbour code, determines whether the center pixel is removed in the first, or second, sub-iteration
+	 */
+	private static boolean[] createTable(boolean firstSubIteration) {
+		var table = new boolean[256];
+		for (var code = 0; code < 256; code++) {
+			var neighbors = new int[8];
+			for (var i = 0; i < 8; i++) {
+				neighbors[i] = (code >>> i) & 1;
+			}
+			table[code] = isRemovable(neighbors, firstSubIteration);
+		}
+		return table;
 	}
 
-	private static boolean isRemovable(int[][] image, int x, int y, boolean firstSubIteration) {
-		int[] neighbors = getNeighbors(image, x, y);
+	private static boolean isRemovable(int[] neighbors, boolean firstSubIteration) {
 		int blackNeighbors = countBlackNeighbors(neighbors);
 
 		if (blackNeighbors < 2 || blackNeighbors > 6) return false;
@@ -74,19 +190,6 @@ public class Skeletonization {
 		}
 	}
 
-	private static int[] getNeighbors(int[][] image, int x, int y) {
-		return new int[]{
-				image[y][x - 1],     // P2
-				image[y + 1][x - 1], // P3
-				image[y + 1][x],     // P4
-				image[y + 1][x + 1], // P5
-				image[y][x + 1],     // P6
-				image[y - 1][x + 1], // P7
-				image[y - 1][x],     // P8
-				image[y - 1][x - 1]  // P9
-		};
-	}
-
 	private static int countBlackNeighbors(int[] neighbors) {
 		int count = 0;
 		for (int neighbor : neighbors) {
@@ -0,0 +1,230 @@
+/*
+ * Thresholding.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.capturepane.capture;
+
+/**
+ * thresholding of gray values into a binary raster, dark pixels are foreground
+ * All methods run in time linear in the number of pixels.
+ * Daniel Huson, 10.2026
+ */
+public class Thresholding {
+	/**
+	 * thresholding methods
+	 * Median: global threshold derived from the median gray value
+	 * Otsu: global threshold that best separates the two classes of the gray value histogram
+	 * Sauvola: local threshold computed from the mean and standard deviation in a window around each pixel,
+	 * suitable for unevenly lit photographs
+	 */
+	public enum Method {Median, Otsu, Sauvola}
+
+	/**
+	 * dynamic range of the standard deviation used by Sauvola's method
+	 */
+	private static final double SAUVOLA_R = 128.0;
+
+	/**
+	 * computes a binary raster using the given method
+	 *
+	 * @param gray      the gray values
+	 * @param histogram the histogram of the gray values
+	 * @param method    the method
+	 * @param window    window size for local methods
+	 * @param k         sensitivity for local methods
+	 * @return binary raster, with set pixels for dark values
+	 */
+	public static BitRaster apply(ByteRaster gray, int[] histogram, Method method, int window, double k) {
+		return switch (method) {
+			case Median -> applyGlobal(gray, medianThreshold(histogram, 1.2));
+			case Otsu -> applyGlobal(gray, otsuThreshold(histogram));
+			case Sauvola -> applySauvola(gray, window, k);
+		};
+	}
+
+	/**
+	 * computes a histogram of gray values
+	 */
+	public static int[] computeHistogram(ByteRaster gray) {
+		var histogram = new int[256];
+		for (var value : gray.getData()) {
+			histogram[value & 0xFF]++;
+		}
+		return histogram;
+	}
+
+	/**
+	 * computes an adaptive threshold from the median gray value
+	 *
+	 * @param histogram       the gray value histogram
+	 * @param thresholdFactor factor to multiply the median by
+	 * @return threshold, in the range 50-200
+	 */
+	public static int medianThreshold(int[] histogram, double thresholdFactor) {
+		var total = 0L;
+		for (var count : histogram) {
+			total += count;
+		}
+		// the value at position total/2 of the sorted gray values
+		var medianRank = total / 2;
+		var median = 0;
+		var cumulative = 0L;
+		for (var value = 0; value < histogram.length; value++) {
+			cumulative += histogram[value];
+			if (cumulative > medianRank) {
+				median = value;
+				break;
+			}
+		}
+		var threshold = (int) (median * thresholdFactor);
+		return Math.max(50, Math.min(threshold, 200));
+	}
+
+	/**
+	 * computes Otsu's threshold, which maximizes the between-class variance
+	 *
+	 * @param histogram the gray value histogram
+	 * @return the threshold, values less or equal are foreground
+	 */
+	public static int otsuThreshold(int[] histogram) {
+		var total = 0L;
+		var sum = 0.0;
+		for (var value = 0; value < histogram.length; value++) {
+			total += histogram[value];
+			sum += (double) value * histogram[value];
+		}
+
+		var bestThreshold = 0;
+		var bestVariance = -1.0;
+		var weightBackground = 0L;
+		var sumBackground = 0.0;
+		for (var value = 0; value < histogram.length; value++) {
+			weightBackground += histogram[value];
+			if (weightBackground == 0)
+				continue;
+			var weightForeground = total - weightBackground;
+			if (weightForeground == 0)
+				break;
+			sumBackground += (double) value * histogram[value];
+			var meanBackground = sumBackground / weightBackground;
+			var meanForeground = (sum - sumBackground) / weightForeground;
+			var variance = (double) weightBackground * weightForeground * (meanBackground - meanForeground) * (meanBackground - meanForeground);
+			if (variance > bestVariance) {
+				bestVariance = variance;
+				bestThreshold = value;
+			}
+		}
+		return bestThreshold;
+	}
+
+	/**
+	 * applies a global threshold
+	 *
+	 * @param gray      gray values
+	 * @param threshold values less or equal to this are foreground
+	 * @return binary raster
+	 */
+	public static BitRaster applyGlobal(ByteRaster gray, int threshold) {
+		var width = gray.getWidth();
+		var height = gray.getHeight();
+		var data = gray.getData();
+		var mask = new BitRaster(width, height);
+		var words = mask.getWords();
+		var wordsPerRow = mask.getWordsPerRow();
+
+		for (var y = 0; y < height; y++) {
+			var offset = gray.index(0, y);
+			for (var w = 0; w < wordsPerRow; w++) {
+				var word = 0L;
+				var x0 = w << 6;
+				var x1 = Math.min(width, x0 + 64);
+				for (var x = x0; x < x1; x++) {
+					if ((data[offset + x] & 0xFF) <= threshold)
+						word |= 1L << x;
+				}
+				words[y * wordsPerRow + w] = word;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * applies Sauvola's local threshold T = m * (1 + k * (s / R - 1)), where m and s are the mean and
+	 * standard deviation of the gray values in a window centered on the pixel.
+	 * Window sums are maintained as running column sums and a per-row prefix sum (a rolling integral image),
+	 * so the running time is independent of the window size and only O(width) additional memory is used.
+	 *
+	 * @param gray   gray values
+	 * @param window window size in pixels
+	 * @param k      sensitivity, typically 0.2-0.5
+	 * @return binary raster
+	 */
+	public static BitRaster applySauvola(ByteRaster gray, int window, double k) {
+		var width = gray.getWidth();
+		var height = gray.getHeight();
+		var data = gray.getData();
+		var radius = Math.max(1, window / 2);
+
+		var mask = new BitRaster(width, height);
+
+		var columnSum = new long[width];
+		var columnSquares = new long[width];
+		var prefixSum = new long[width + 1];
+		var prefixSquares = new long[width + 1];
+
+		// initialize column sums for rows 0..radius-1, the loop adds row y+radius before processing row y
+		for (var y = 0; y < Math.min(radius, height); y++) {
+			addRow(data, gray.index(0, y), width, columnSum, columnSquares, 1);
+		}
+
+		for (var y = 0; y < height; y++) {
+			if (y + radius < height)
+				addRow(data, gray.index(0, y + radius), width, columnSum, columnSquares, 1);
+			if (y - radius - 1 >= 0)
+				addRow(data, gray.index(0, y - radius - 1), width, columnSum, columnSquares, -1);
+			var rows = Math.min(height - 1, y + radius) - Math.max(0, y - radius) + 1;
+
+			for (var x = 0; x < width; x++) {
+				prefixSum[x + 1] = prefixSum[x] + columnSum[x];
+				prefixSquares[x + 1] = prefixSquares[x] + columnSquares[x];
+			}
+
+			var offset = gray.index(0, y);
+			for (var x = 0; x < width; x++) {
+				var x0 = Math.max(0, x - radius);
+				var x1 = Math.min(width - 1, x + radius);
+				var count = (double) rows * (x1 - x0 + 1);
+				var mean = (prefixSum[x1 + 1] - prefixSum[x0]) / count;
+				var variance = Math.max(0.0, (prefixSquares[x1 + 1] - prefixSquares[x0]) / count - mean * mean);
+				var threshold = mean * (1.0 + k * (Math.sqrt(variance) / SAUVOLA_R - 1.0));
+				if ((data[offset + x] & 0xFF) <= threshold)
+					mask.set(x, y);
+			}
+		}
+		return mask;
+	}
+
+	private static void addRow(byte[] data, int offset, int width, long[] columnSum, long[] columnSquares, int sign) {
+		for (var x = 0; x < width; x++) {
+			var value = data[offset + x] & 0xFF;
+			columnSum[x] += sign * value;
+			columnSquares[x] += sign * value * value;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * WordBoxIndex.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package phylosketch.capturepane.capture;
+
+import javafx.geometry.Rectangle2D;
+import phylosketch.ocr.OcrWord;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * static R-tree over the bounding boxes of OCR words
+ * Daniel Huson, 10.2026
+ */
+public class WordBoxIndex extends BoxIndex<OcrWord> {
+	/**
+	 * indexes the bounding boxes of the given words
+	 */
+	public WordBoxIndex(List<OcrWord> words) {
+		this(words, OcrWord::boundingBox);
+	}
+
+	/**
+	 * indexes the given words using the given box for each
+	 *
+	 * @param words the words
+	 * @param box   the box to use for each word, may be degenerate to index points
+	 */
+	public WordBoxIndex(List<OcrWord> words, Function<OcrWord, Rectangle2D> box) {
+		super(words, box);
+	}
+
+	public OcrWord getWord(int index) {
+		return getItem(index);
+	}
+
+	public List<OcrWord> getWords() {
+		return getItems();
+	}
+}
@@ -0,0 +1,424 @@
+/*
+ * CaptureOverlay.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package phylosketch.capturepane.pane;
+
+import javafx.application.Platform;
+import javafx.collections.SetChangeListener;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
+import javafx.geometry.VPos;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.Label;
+import javafx.scene.control.MenuItem;
+import javafx.scene.input.ContextMenuEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.transform.Scale;
+import jloda.fx.selection.SelectionModel;
+import jloda.fx.selection.SetSelectionModel;
+import jloda.fx.util.ClipboardUtils;
+import jloda.fx.util.ProgramProperties;
+import jloda.fx.util.SelectionEffectBlue;
+import phylosketch.capturepane.capture.BoxIndex;
+import phylosketch.capturepane.capture.Point;
+import phylosketch.capturepane.capture.Segment;
+import phylosketch.capturepane.capture.WordBoxIndex;
+import phylosketch.ocr.OcrWord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * shows captured segments, end points and words on a single canvas, instead of one node per item
+ * The canvas only covers the part of the overlay that is visible in the viewport and is redrawn when that changes.
+ * Items are found for drawing and for mouse clicks using spatial indices. Only selected items are also shown as nodes,
+ * on top of the canvas.
+ * The overlay itself is mouse transparent, clicks and context menu requests are handled on the parent,
+ * so that they also reach the image below.
+ * Daniel Huson, 10.2026
+ */
+public class CaptureOverlay extends Pane {
+	/**
+	 * maximal width and height of the canvas, in pixels
+	 */
+	private static final int MAX_CANVAS_SIZE = 4096;
+	private static final double SEGMENT_WIDTH = 7;
+	private static final double END_POINT_RADIUS = 2;
+	private static final double WORD_FONT_SIZE = 14;
+	/**
+	 * distance in screen pixels within which a click hits a segment
+	 */
+	private static final double HIT_TOLERANCE = 4;
+
+	private static final Color END_POINT_COLOR = Color.DEEPPINK.deriveColor(1.0, 1.0, 1.0, 0.5);
+	private static final Color WORD_FILL = Color.rgb(240, 255, 240, 0.3);
+	private static final Color WORD_COLOR = Color.DARKGREEN;
+
+	private final Node viewport;
+	private final Canvas canvas = new Canvas();
+	private final Group selectedGroup = new Group();
+
+	private final SelectionModel<Segment> segmentSelection = new SetSelectionModel<>();
+	private final SelectionModel<OcrWord> wordSelection = new SetSelectionModel<>();
+	private final Map<Object, List<Node>> selectedNodes = new HashMap<>();
+
+	private BoxIndex<Segment> segmentIndex = new BoxIndex<>(List.of(), Segment::computeBoundingBox);
+	private Color[] segmentColors = new Color[0];
+	// position of each segment in the index, by identity, as segments are records that compare by their points
+	private final Map<Segment, Integer> segmentNumbers = new IdentityHashMap<>();
+	private BoxIndex<Point> endPointIndex = new BoxIndex<>(List.of(), CaptureOverlay::pointBox);
+	private WordBoxIndex wordIndex = new WordBoxIndex(List.of());
+	private Rectangle2D contentBounds;
+
+	private boolean redrawPending = false;
+
+	/**
+	 * constructor
+	 *
+	 * @param viewport the node through which the overlay is seen, such as a scroll pane
+	 */
+	public CaptureOverlay(Node viewport) {
+		this.viewport = viewport;
+		setMouseTransparent(true);
+		setPickOnBounds(false);
+		setManaged(false); // the canvas follows the viewport and must not change the layout of the parent
+		getChildren().addAll(canvas, selectedGroup);
+
+		localToSceneTransformProperty().addListener(e -> scheduleRedraw());
+		viewport.layoutBoundsProperty().addListener(e -> scheduleRedraw());
+		sceneProperty().addListener(e -> scheduleRedraw());
+
+		segmentSelection.getSelectedItems().addListener((SetChangeListener<? super Segment>) e -> {
+			if (e.wasAdded())
+				addSelectedNodes(e.getElementAdded(), List.of(createSegmentNode(e.getElementAdded())));
+			else if (e.wasRemoved())
+				removeSelectedNodes(e.getElementRemoved());
+		});
+		wordSelection.getSelectedItems().addListener((SetChangeListener<? super OcrWord>) e -> {
+			if (e.wasAdded())
+				addSelectedNodes(e.getElementAdded(), createWordNodes(e.getElementAdded()));
+			else if (e.wasRemoved())
+				removeSelectedNodes(e.getElementRemoved());
+		});
+	}
+
+	/**
+	 * handles mouse clicks and context menu requests on the given node, which should be the parent of the overlay,
+	 * by hit testing the items of the overlay
+	 *
+	 * @param node      the node
+	 * @param canSelect determines whether items can currently be selected
+	 */
+	public void installMouseHandlers(Node node, Supplier<Boolean> canSelect) {
+		node.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
+			if (e.isStillSincePress() && canSelect.get()) {
+				var local = sceneToLocal(e.getSceneX(), e.getSceneY());
+				var word = findWord(local.getX(), local.getY());
+				if (word != null) {
+					toggle(wordSelection, word, e.isShiftDown());
+					e.consume();
+				} else {
+					var segment = findSegment(local.getX(), local.getY());
+					if (segment != null) {
+						toggle(segmentSelection, segment, e.isShiftDown());
+						e.consume();
+					}
+				}
+			}
+		});
+		node.addEventHandler(ContextMenuEvent.CONTEXT_MENU_REQUESTED, e -> {
+			var local = sceneToLocal(e.getSceneX(), e.getSceneY());
+			var word = findWord(local.getX(), local.getY());
+			if (word != null) {
+				var copyItem = new MenuItem("Copy");
+				copyItem.setOnAction(a -> ClipboardUtils.putString(word.text()));
+				var menu = new ContextMenu();
+				menu.getItems().add(copyItem);
+				menu.show(node, e.getScreenX(), e.getScreenY());
+				e.consume();
+			}
+		});
+	}
+
+	private static <T> void toggle(SelectionModel<T> selection, T item, boolean shiftDown) {
+		if (!shiftDown && ProgramProperties.isDesktop()) {
+			selection.clearSelection();
+		}
+		selection.toggleSelection(item);
+	}
+
+	/**
+	 * sets the segments and end points to show, in the coordinates of the overlay
+	 */
+	public void setSegments(List<Segment> segments, List<Point> endPoints) {
+		segmentSelection.clearSelection();
+		segmentIndex = new BoxIndex<>(segments, Segment::computeBoundingBox);
+		segmentColors = new Color[segments.size()];
+		segmentNumbers.clear();
+		for (var i = 0; i < segments.size(); i++) {
+			// seeded by the position, so that a segment keeps its color when the canvas is redrawn
+			var random = new Random(i);
+			segmentColors[i] = new Color(random.nextDouble(), random.nextDouble(), 1, 0.5).darker();
+			segmentNumbers.put(segments.get(i), i);
+		}
+		endPointIndex = new BoxIndex<>(endPoints, CaptureOverlay::pointBox);
+		updateContentBounds();
+	}
+
+	/**
+	 * sets the words to show, in the coordinates of the overlay
+	 */
+	public void setWords(List<OcrWord> words) {
+		wordSelection.clearSelection();
+		wordIndex = new WordBoxIndex(words);
+		updateContentBounds();
+	}
+
+	/**
+	 * removes all items
+	 */
+	public void clear() {
+		setSegments(List.of(), List.of());
+		setWords(List.of());
+	}
+
+	public SelectionModel<Segment> getSegmentSelection() {
+		return segmentSelection;
+	}
+
+	public SelectionModel<OcrWord> getWordSelection() {
+		return wordSelection;
+	}
+
+	/**
+	 * finds the topmost word whose box contains the given point
+	 */
+	public OcrWord findWord(double x, double y) {
+		var found = new int[]{-1};
+		wordIndex.forEachContaining(x, y, i -> found[0] = Math.max(found[0], i));
+		return found[0] >= 0 ? wordIndex.getWord(found[0]) : null;
+	}
+
+	/**
+	 * finds the topmost segment that passes within the stroke width or the hit tolerance of the given point
+	 */
+	public Segment findSegment(double x, double y) {
+		var tolerance = Math.max(0.5 * SEGMENT_WIDTH, HIT_TOLERANCE / getScaleFactor());
+		var found = new int[]{-1};
+		segmentIndex.forEachIntersecting(new Rectangle2D(x - tolerance, y - tolerance, 2 * tolerance, 2 * tolerance), i -> {
+			if (i > found[0] && distance(segmentIndex.getItem(i), x, y) <= tolerance)
+				found[0] = i;
+		});
+		return found[0] >= 0 ? segmentIndex.getItem(found[0]) : null;
+	}
+
+	private void scheduleRedraw() {
+		if (!redrawPending) {
+			redrawPending = true;
+			Platform.runLater(this::redraw);
+		}
+	}
+
+	/**
+	 * draws all items that intersect the visible part of the overlay
+	 */
+	private void redraw() {
+		redrawPending = false;
+
+		var scaleFactor = getScaleFactor(); // also revalidates the transform, so that further changes are reported
+		var visible = computeVisibleRegion();
+		if (visible == null) {
+			canvas.setWidth(0);
+			canvas.setHeight(0);
+			return;
+		}
+
+		var scale = Math.min(scaleFactor, MAX_CANVAS_SIZE / Math.max(visible.getWidth(), visible.getHeight()));
+		canvas.setLayoutX(visible.getMinX());
+		canvas.setLayoutY(visible.getMinY());
+		canvas.setWidth(Math.ceil(scale * visible.getWidth()));
+		canvas.setHeight(Math.ceil(scale * visible.getHeight()));
+		canvas.getTransforms().setAll(new Scale(1 / scale, 1 / scale, 0, 0));
+
+		var gc = canvas.getGraphicsContext2D();
+		gc.setTransform(1, 0, 0, 1, 0, 0);
+		gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		gc.setTransform(scale, 0, 0, scale, -scale * visible.getMinX(), -scale * visible.getMinY());
+
+		gc.setLineWidth(SEGMENT_WIDTH);
+		segmentIndex.forEachIntersecting(visible, i -> {
+			var points = segmentIndex.getItem(i).points();
+			gc.setStroke(segmentColors[i]);
+			gc.beginPath();
+			for (var k = 0; k < points.size(); k++) {
+				if (k == 0)
+					gc.moveTo(points.get(k).x(), points.get(k).y());
+				else
+					gc.lineTo(points.get(k).x(), points.get(k).y());
+			}
+			gc.stroke();
+		});
+
+		gc.setFill(END_POINT_COLOR);
+		endPointIndex.forEachIntersecting(visible, i -> {
+			var point = endPointIndex.getItem(i);
+			gc.fillOval(point.x() - END_POINT_RADIUS, point.y() - END_POINT_RADIUS, 2 * END_POINT_RADIUS, 2 * END_POINT_RADIUS);
+		});
+
+		gc.setLineWidth(0.5);
+		gc.setFont(Font.font(WORD_FONT_SIZE));
+		gc.setTextBaseline(VPos.TOP);
+		wordIndex.forEachIntersecting(visible, i -> {
+			var word = wordIndex.getWord(i);
+			var bbox = word.boundingBox();
+			gc.setFill(WORD_FILL);
+			gc.fillRect(bbox.getMinX(), bbox.getMinY(), bbox.getWidth(), bbox.getHeight());
+			gc.setStroke(WORD_COLOR);
+			gc.strokeRect(bbox.getMinX(), bbox.getMinY(), bbox.getWidth(), bbox.getHeight());
+			gc.setFill(WORD_COLOR);
+			gc.fillText(word.text(), bbox.getMinX() + 1, bbox.getMinY() + 1);
+		});
+	}
+
+	/**
+	 * the part of the content that is visible in the viewport, in local coordinates
+	 *
+	 * @return visible region or null, if nothing is visible
+	 */
+	private Rectangle2D computeVisibleRegion() {
+		if (getScene() == null || contentBounds == null)
+			return null;
+		Bounds bounds = sceneToLocal(viewport.localToScene(viewport.getLayoutBounds()));
+		if (bounds == null)
+			return null;
+		var minX = Math.max(bounds.getMinX(), contentBounds.getMinX());
+		var minY = Math.max(bounds.getMinY(), contentBounds.getMinY());
+		var maxX = Math.min(bounds.getMaxX(), contentBounds.getMaxX());
+		var maxY = Math.min(bounds.getMaxY(), contentBounds.getMaxY());
+		if (maxX <= minX || maxY <= minY)
+			return null;
+		return new Rectangle2D(minX, minY, maxX - minX, maxY - minY);
+	}
+
+	/**
+	 * the factor by which the overlay is scaled on screen
+	 */
+	private double getScaleFactor() {
+		var transform = getLocalToSceneTransform();
+		var scale = Math.hypot(transform.getMxx(), transform.getMyx());
+		return scale > 0 ? scale : 1.0;
+	}
+
+	private void updateContentBounds() {
+		Bounds bounds = null;
+		for (var index : List.<BoxIndex<?>>of(segmentIndex, endPointIndex, wordIndex)) {
+			for (var i = 0; i < index.size(); i++) {
+				var box = index.getBox(i);
+				var itemBounds = new BoundingBox(box.getMinX(), box.getMinY(), box.getWidth(), box.getHeight());
+				bounds = (bounds == null ? itemBounds : union(bounds, itemBounds));
+			}
+		}
+		if (bounds == null)
+			contentBounds = null;
+		else {
+			// leave room for strokes and word labels that extend beyond the boxes
+			var margin = SEGMENT_WIDTH + WORD_FONT_SIZE;
+			contentBounds = new Rectangle2D(bounds.getMinX() - margin, bounds.getMinY() - margin, bounds.getWidth() + 2 * margin, bounds.getHeight() + 2 * margin);
+		}
+		scheduleRedraw();
+	}
+
+	private static Bounds union(Bounds a, Bounds b) {
+		var minX = Math.min(a.getMinX(), b.getMinX());
+		var minY = Math.min(a.getMinY(), b.getMinY());
+		return new BoundingBox(minX, minY, Math.max(a.getMaxX(), b.getMaxX()) - minX, Math.max(a.getMaxY(), b.getMaxY()) - minY);
+	}
+
+	private void addSelectedNodes(Object item, List<Node> nodes) {
+		for (var node : nodes) {
+			node.setEffect(SelectionEffectBlue.getInstance());
+		}
+		selectedNodes.put(item, nodes);
+		selectedGroup.getChildren().addAll(nodes);
+	}
+
+	private void removeSelectedNodes(Object item) {
+		var nodes = selectedNodes.remove(item);
+		if (nodes != null)
+			selectedGroup.getChildren().removeAll(nodes);
+	}
+
+	private Node createSegmentNode(Segment segment) {
+		var path = DrawUtils.createPath(segment);
+		path.setStroke(segmentColors[segmentNumbers.get(segment)]);
+		return path;
+	}
+
+	private static List<Node> createWordNodes(OcrWord word) {
+		var bbox = word.boundingBox();
+		var rectangle = new Rectangle(bbox.getMinX(), bbox.getMinY(), bbox.getWidth(), bbox.getHeight());
+		rectangle.setStyle("-fx-fill: rgba(240, 255, 240, 0.3);-fx-stroke: darkgreen;-fx-stroke-width: 0.5;");
+
+		var label = new Label(word.text());
+		label.setFont(new Font(label.getFont().getFamily(), WORD_FONT_SIZE));
+		label.setStyle("-fx-text-fill: darkgreen;");
+		label.setLayoutX(bbox.getMinX() + 1);
+		label.setLayoutY(bbox.getMinY() + 1);
+		return List.of(rectangle, label);
+	}
+
+	private static Rectangle2D pointBox(Point point) {
+		return new Rectangle2D(point.x() - END_POINT_RADIUS, point.y() - END_POINT_RADIUS, 2 * END_POINT_RADIUS, 2 * END_POINT_RADIUS);
+	}
+
+	/**
+	 * distance from a point to the polyline of a segment
+	 */
+	private static double distance(Segment segment, double x, double y) {
+		var points = segment.points();
+		if (points.size() == 1)
+			return Math.hypot(points.get(0).x() - x, points.get(0).y() - y);
+		var best = Double.MAX_VALUE;
+		for (var k = 1; k < points.size(); k++) {
+			var a = points.get(k - 1);
+			var b = points.get(k);
+			var dx = b.x() - a.x();
+			var dy = b.y() - a.y();
+			var lengthSquared = (double) dx * dx + (double) dy * dy;
+			var t = (lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((x - a.x()) * dx + (y - a.y()) * dy) / lengthSquared)));
+			best = Math.min(best, Math.hypot(a.x() + t * dx - x, a.y() + t * dy - y));
+		}
+		return best;
+	}
+}
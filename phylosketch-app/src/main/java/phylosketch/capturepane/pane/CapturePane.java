@@ -20,18 +20,24 @@
 
 package phylosketch.capturepane.pane;
 
+import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
+import javafx.beans.binding.Bindings;
 import javafx.beans.property.*;
 import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.Group;
 import javafx.scene.control.Button;
+import javafx.scene.control.Tooltip;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
 import javafx.scene.shape.Rectangle;
+import javafx.util.Duration;
 import jloda.fx.icons.MaterialIcons;
 import jloda.fx.util.ClipboardUtils;
 import jloda.fx.windownotifications.WindowNotifications;
@@ -42,6 +48,9 @@ import phylosketch.view.DrawView;
 import phylosketch.view.RootPosition;
 import phylosketch.window.MainWindowController;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * maintain an image in the background for image capturepane
  * Daniel Huson, 1.2025
@@ -52,8 +61,7 @@ public class CapturePane extends HBox {
 
 	private final Pane mainPane = new Pane();
 	private final ImageView imageView = new ImageView();
-	private final Group wordsGroup = new Group();
-	private final Group pathsGroup = new Group();
+	private final CaptureOverlay overlay;
 	private final Group rootGroup = new Group();
 
 	private final BooleanProperty hasImage = new SimpleBooleanProperty(this, "hasImage", false);
@@ -74,6 +82,15 @@ public class CapturePane extends HBox {
 
 	private final ObjectProperty<Rectangle> selectionRectangle = new SimpleObjectProperty<>(this, "selectionRectangle");
 
+	private final BooleanProperty regionMode = new SimpleBooleanProperty(this, "regionMode", false);
+	private final ObjectProperty<Rectangle2D> captureRegion = new SimpleObjectProperty<>(this, "captureRegion");
+
+	private static final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor(r -> {
+		var thread = new Thread(r, "Image analysis");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	public CapturePane(DrawView view, MainWindowController controller) {
 		this.view = view;
 		windowPane = controller.getRootPane();
@@ -87,21 +104,24 @@ public class CapturePane extends HBox {
 				imageView.setFitWidth(n.getWidth());
 				imageView.setFitHeight(n.getHeight());
 			}
+			setCaptureRegion(null);
 		});
 
 		hasImage.bind(imageView.imageProperty().isNotNull());
 
 		mainPane.getChildren().addAll(imageView);
+
+		overlay = new CaptureOverlay(controller.getScrollPane());
+		overlay.installMouseHandlers(mainPane, this::isCanSelect);
+
 		showCapture.addListener((v, o, n) -> {
 			if (n) {
-				if (!mainPane.getChildren().contains(pathsGroup))
-					mainPane.getChildren().remove(pathsGroup);
-				if (!mainPane.getChildren().contains(wordsGroup))
-					mainPane.getChildren().add(wordsGroup);
+				if (!mainPane.getChildren().contains(overlay))
+					mainPane.getChildren().add(overlay);
 				view.getOtherGroup().getChildren().add(rootGroup);
 			} else {
 				ScrollPaneUtils.runRemoveAndKeepScrollPositions(controller.getScrollPane(), () -> {
-					mainPane.getChildren().removeAll(pathsGroup, wordsGroup);
+					mainPane.getChildren().remove(overlay);
 					view.getOtherGroup().getChildren().remove(rootGroup);
 				});
 			}
@@ -132,15 +152,26 @@ public class CapturePane extends HBox {
 
 		captureService = SetupCaptureService.apply(controller, view, this);
 
+		// time, CPU time, allocations and counts of the phases of the last capture, copied as JSON when pressed
+		var metrics = captureService.getMetrics();
+		var metricsButton = new Button("Metrics");
+		MaterialIcons.setIcon(metricsButton, MaterialIcons.timer);
+		var metricsTooltip = new Tooltip();
+		metricsTooltip.setStyle("-fx-font-family: monospace;");
+		metricsTooltip.setShowDuration(Duration.INDEFINITE);
+		metricsTooltip.textProperty().bind(Bindings.createStringBinding(metrics::toTable, metrics.getPhases()));
+		metricsButton.setTooltip(metricsTooltip);
+		metricsButton.setOnAction(e -> ClipboardUtils.putString(metrics.toJson()));
+		metricsButton.visibleProperty().bind(Bindings.isNotEmpty(metrics.getPhases()));
+		rightBorderPane.setCenter(metricsButton);
+
 		if (false) {
 			InvalidationListener updateScaling = e -> {
 				if (imageView.getImage() != null) {
 					var factorX = imageView.getBoundsInLocal().getWidth() / imageView.getImage().getWidth();
 					var factorY = imageView.getBoundsInLocal().getHeight() / imageView.getImage().getHeight();
-					wordsGroup.setScaleX(factorX);
-					wordsGroup.setScaleY(factorY);
-					pathsGroup.setScaleX(factorX);
-					pathsGroup.setScaleY(factorY);
+					overlay.setScaleX(factorX);
+					overlay.setScaleY(factorY);
 				}
 			};
 			imageView.imageProperty().addListener(updateScaling);
@@ -171,12 +202,11 @@ public class CapturePane extends HBox {
 		return rootGroup;
 	}
 
-	public Group getWordsGroup() {
-		return wordsGroup;
-	}
-
-	public Group getPathsGroup() {
-		return pathsGroup;
+	/**
+	 * the layer showing the captured segments, end points and words
+	 */
+	public CaptureOverlay getOverlay() {
+		return overlay;
 	}
 
 	public BooleanProperty hasImageProperty() {
@@ -201,6 +231,7 @@ public class CapturePane extends HBox {
 		else {
 			if (captureService.getInputImage() != getImageView().getImage())
 				captureService.setInputImage(getImageView().getImage());
+			captureService.setRegion(isRegionMode() ? getCaptureRegion() : null);
 			captureService.run(goal);
 		}
 	}
@@ -231,11 +262,36 @@ public class CapturePane extends HBox {
 	}
 
 	public void reset() {
-		wordsGroup.getChildren().clear();
-		pathsGroup.getChildren().clear();
+		overlay.clear();
 		captureService.clearData();
 	}
 
+	public boolean isRegionMode() {
+		return regionMode.get();
+	}
+
+	/**
+	 * in region mode, the user can drag a rectangle over the image to capture only from that region
+	 */
+	public BooleanProperty regionModeProperty() {
+		return regionMode;
+	}
+
+	public Rectangle2D getCaptureRegion() {
+		return captureRegion.get();
+	}
+
+	/**
+	 * the region to capture from, in image coordinates, or null
+	 */
+	public ObjectProperty<Rectangle2D> captureRegionProperty() {
+		return captureRegion;
+	}
+
+	public void setCaptureRegion(Rectangle2D captureRegion) {
+		this.captureRegion.set(captureRegion);
+	}
+
 	public Pane getMainPane() {
 		return mainPane;
 	}
@@ -277,11 +333,41 @@ public class CapturePane extends HBox {
 	}
 
 	public void setImage(Image image) {
-		if (phylosketch.window.MainWindowPresenter.SUPPORTS_CAPTURE) {
-			PhyloImageAnalyzer.analyze(image, s -> {
-				WindowNotifications.showWarning(windowPane, s);
-			});
-		}
 		getImageView().setImage(image);
+		if (phylosketch.window.MainWindowPresenter.SUPPORTS_CAPTURE && image != null) {
+			analyzeInBackground(image);
+		}
+	}
+
+	/**
+	 * analyzes the image in the background. Then, unless the image has been replaced in the meantime, shows the problems
+	 * found and, if auto-tuning is on, sets the recommended capture parameters and tells the user which were changed
+	 *
+	 * @param image the image
+	 */
+	private void analyzeInBackground(Image image) {
+		var reader = image.getPixelReader();
+		if (reader == null) {
+			WindowNotifications.showWarning(windowPane, "Image could not be read. Please load an image containing your tree or network.");
+			return;
+		}
+		var width = (int) image.getWidth();
+		var height = (int) image.getHeight();
+		analysisExecutor.execute(() -> {
+			var report = PhyloImageAnalyzer.analyze(width, height, (y, buffer) -> reader.getPixels(0, y, width, 1, PixelFormat.getIntArgbInstance(), buffer, 0, width));
+			Platform.runLater(() -> {
+				if (getImageView().getImage() == image) {
+					for (var warning : report.warnings()) {
+						WindowNotifications.showWarning(windowPane, warning);
+					}
+					var parameters = captureService.getParameters();
+					if (parameters.isAutoTune() && !captureService.isRunning()) {
+						var changes = report.applyTo(parameters);
+						if (!changes.isEmpty())
+							WindowNotifications.showInfo(windowPane, "Auto-tuned capture parameters: " + String.join(", ", changes));
+					}
+				}
+			});
+		});
 	}
 }
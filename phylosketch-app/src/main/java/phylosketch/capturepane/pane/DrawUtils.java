@@ -20,25 +20,11 @@
 
 package phylosketch.capturepane.pane;
 
-import javafx.scene.Group;
-import javafx.scene.Node;
-import javafx.scene.control.ContextMenu;
-import javafx.scene.control.Label;
-import javafx.scene.control.MenuItem;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.*;
-import javafx.scene.text.Font;
-import javafx.scene.text.Text;
-import jloda.fx.selection.SelectionModel;
-import jloda.fx.util.ClipboardUtils;
-import jloda.fx.util.ProgramProperties;
-import phylosketch.capturepane.capture.Point;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
 import phylosketch.capturepane.capture.Segment;
-import phylosketch.ocr.OcrWord;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.function.Supplier;
 
 /**
  * utilities for drawing stuff
@@ -46,51 +32,6 @@ import java.util.function.Supplier;
  */
 public class DrawUtils {
 
-	public static List<Node> createCircles(List<Point> points) {
-		var list = new ArrayList<Node>(points.stream().map(DrawUtils::createCircle).toList());
-		if (false)
-			list.addAll(points.stream().map(
-					p -> {
-						var text = new Text(p.x() + "," + p.y());
-						text.setLayoutX(p.x() + 5 + (50 * Math.random() - 25));
-						text.setLayoutY(p.y() - 5 + (50 * Math.random() - 25));
-						text.setStroke(Color.DARKRED);
-						return text;
-					}
-			).toList());
-		return list;
-	}
-
-	public static Shape createCircle(Point point) {
-		var shape = new Circle(2);
-		shape.setFill(Color.DEEPPINK.deriveColor(1.0, 1.0, 1.0, 0.5));
-		shape.setStroke(Color.DEEPPINK.deriveColor(1.0, 1.0, 1.0, 0.5));
-		shape.setLayoutX(point.x());
-		shape.setLayoutY(point.y());
-		return shape;
-	}
-
-	public static List<Node> createPaths(List<Segment> segments, SelectionModel<Segment> selection, Supplier<Boolean> canSelect) {
-		var list = new ArrayList<Node>();
-		for (var segment : segments) {
-			var path = createPath(segment);
-			path.setTranslateX(30 * Math.random() - 15);
-			path.setTranslateY(30 * Math.random() - 15);
-
-			path.setOnMouseClicked(e -> {
-				if (canSelect.get()) {
-					if (!e.isShiftDown() && ProgramProperties.isDesktop()) {
-						selection.clearSelection();
-					}
-					selection.toggleSelection(segment);
-					e.consume();
-				}
-			});
-			list.add(path);
-		}
-		return list;
-	}
-
 	public static Path createPath(Segment segment) {
 		var points = segment.points();
 		var path = new Path();
@@ -107,44 +48,4 @@ public class DrawUtils {
 		path.setUserData(segment);
 		return path;
 	}
-
-	public static void createWordShapes(List<OcrWord> wordList, SelectionModel<OcrWord> selection, Supplier<Boolean> canSelect, Group group) {
-		group.getChildren().clear();
-
-		for (var word : wordList) {
-			var bbox = word.boundingBox();
-			var rectangle = new Rectangle(bbox.getMinX(), bbox.getMinY(), bbox.getWidth(), bbox.getHeight());
-			rectangle.setStyle("-fx-fill: rgba(240, 255, 240, 0.3);-fx-stroke: darkgreen;-fx-stroke-width: 0.5;");
-			rectangle.setUserData(word);
-
-			var label = new Label(word.text());
-			label.setFont(new Font(label.getFont().getFamily(), 14));
-			label.setStyle("-fx-text-fill: darkgreen;");
-			label.setLayoutX(bbox.getMinX() + 1);
-			label.setLayoutY(bbox.getMinY() + 1);
-			label.setUserData(word);
-
-			group.getChildren().addAll(rectangle, label);
-
-			rectangle.setOnMouseClicked(e -> {
-				if (canSelect.get()) {
-					if (!e.isShiftDown() && ProgramProperties.isDesktop()) {
-						selection.clearSelection();
-					}
-					selection.toggleSelection(word);
-					e.consume();
-				}
-			});
-			label.setOnMouseClicked(rectangle.getOnMouseClicked());
-
-			rectangle.setOnContextMenuRequested(me -> {
-				var copyItem = new MenuItem("Copy");
-				copyItem.setOnAction(e -> ClipboardUtils.putString(word.text()));
-				var menu = new ContextMenu();
-				menu.getItems().add(copyItem);
-				menu.show(rectangle, me.getScreenX(), me.getScreenY());
-			});
-		}
-	}
-
 }
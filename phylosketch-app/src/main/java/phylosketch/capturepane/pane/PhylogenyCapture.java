@@ -24,6 +24,7 @@ import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.Property;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
 import jloda.fx.undo.CompositeCommand;
 import jloda.fx.undo.UndoableRedoableCommand;
 import jloda.graph.Node;
@@ -31,14 +32,13 @@ import jloda.util.CollectionUtils;
 import jloda.util.IteratorUtils;
 import jloda.util.Pair;
 import phylosketch.capturepane.capture.Segment;
+import phylosketch.capturepane.capture.WordBoxIndex;
 import phylosketch.commands.*;
 import phylosketch.ocr.OcrWord;
 import phylosketch.view.DrawView;
 import phylosketch.view.RootPosition;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.util.*;
 import java.util.function.BiFunction;
 
 import static phylosketch.capturepane.pane.DrawUtils.createPath;
@@ -178,81 +178,30 @@ public class PhylogenyCapture {
 			return new RootPosition(RootPosition.Side.Center, rootLocation);
 	}
 
+	/**
+	 * assigns words to leaves, greedily by increasing distance, as long as a word is positioned acceptably relative to a leaf,
+	 * and then, if requested, creates nodes for the words that were not assigned
+	 */
 	private static void matchLabels(DrawView view, RootPosition rootPosition, List<Node> nodes, List<OcrWord> words0, boolean rescueOrphans, List<UndoableRedoableCommand> commands) {
-		var leaves = new ArrayList<Pair<Point2D, Node>>();
+		var leaves = new ArrayList<Node>();
+		var leafPositions = new ArrayList<Point2D>();
 		for (var v : nodes) {
 			if (v.isLeaf()) {
-				leaves.add(new Pair<>(DrawView.getPoint(v), v));
+				leaves.add(v);
+				leafPositions.add(DrawView.getPoint(v));
 			}
 		}
-		var words = new ArrayList<>(words0);
 
-		var delta = 10.0;
-
-		while (!leaves.isEmpty() && !words.isEmpty()) {
-			var bestDistance = Double.MAX_VALUE;
-			Pair<Point2D, Node> bestLeaf = null;
-			OcrWord bestWord = null;
-
-			for (var leaf : leaves) {
-				var leafPos = leaf.getFirst();
-				for (var word : words) {
-					var bbox = word.boundingBox();
-
-					// make sure position is acceptable
-					switch (rootPosition.side()) {
-						case Left -> {
-							if (bbox.getMinX() < leafPos.getX() - delta)
-								continue;
-							if (leafPos.getY() < bbox.getMinY() - delta || leafPos.getY() > bbox.getMaxY() + delta)
-								continue;
-
-						}
-						case Right -> {
-							if (bbox.getMinX() > leafPos.getX() + delta)
-								continue;
-							if (leafPos.getY() < bbox.getMinY() - delta || leafPos.getY() > bbox.getMaxY() + delta)
-								continue;
-						}
-						case Bottom -> {
-							if (bbox.getMinY() < leafPos.getY() - delta)
-								continue;
-							if (leafPos.getX() < bbox.getMinX() - delta || leafPos.getX() > bbox.getMaxX() + delta)
-								continue;
-						}
-						case Top -> {
-							if (bbox.getMinY() > leafPos.getY() + delta)
-								continue;
-							if (leafPos.getX() < bbox.getMinX() - delta || leafPos.getX() > bbox.getMaxX() + delta)
-								continue;
-						}
-						case Center -> {
-							if (rootPosition.location().distance(0.5 * (bbox.getMinX() + bbox.getMaxX()), 0.5 * (bbox.getMinY() + bbox.getMaxY())) < rootPosition.location().distance(leafPos) - delta)
-								continue;
-						}
-					}
+		var used = new boolean[words0.size()];
+		for (var assignment : assignLabels(rootPosition, leafPositions, words0)) {
+			used[assignment.word()] = true;
+			doThenAdd(new SetNodeLabelsCommand(view, rootPosition, List.of(leaves.get(assignment.leaf())), words0.get(assignment.word()).text()), commands);
+		}
 
-					// see whether this is a better match
-					var distance = switch (rootPosition.side()) {
-						case Left -> leafPos.distance(bbox.getMinX(), 0.5 * (bbox.getMinY() + bbox.getMaxY()));
-						case Right -> leafPos.distance(bbox.getMaxX(), 0.5 * (bbox.getMinY() + bbox.getMaxY()));
-						case Bottom -> leafPos.distance(0.5 * (bbox.getMinX() + bbox.getMaxX()), bbox.getMaxY());
-						case Top -> leafPos.distance(0.5 * (bbox.getMinX() + bbox.getMaxX()), bbox.getMinY());
-						case Center ->
-								leafPos.distance(0.5 * (bbox.getMinX() + bbox.getMaxX()), 0.5 * (bbox.getMinY() + bbox.getMaxY()));
-					};
-					if (distance < bestDistance) {
-						bestDistance = distance;
-						bestWord = word;
-						bestLeaf = leaf;
-					}
-				}
-			}
-			if (bestLeaf != null) {
-				leaves.remove(bestLeaf);
-				words.remove(bestWord);
-				doThenAdd(new SetNodeLabelsCommand(view, rootPosition, List.of(bestLeaf.getSecond()), bestWord.text()), commands);
-			} else break;
+		var words = new ArrayList<OcrWord>();
+		for (var w = 0; w < words0.size(); w++) {
+			if (!used[w])
+				words.add(words0.get(w));
 		}
 		if (rescueOrphans) {
 			if (!words.isEmpty()) {
@@ -270,4 +219,100 @@ public class PhylogenyCapture {
 			}
 		}
 	}
+
+	/**
+	 * a word assigned to a leaf, by their indices
+	 */
+	public record LabelAssignment(int leaf, int word) {
+	}
+
+	/**
+	 * assigns words to leaves, greedily by increasing distance, as long as a word is positioned acceptably relative to a leaf.
+	 * The words are indexed by their anchor points, so each leaf enumerates the words by increasing distance
+	 * and a priority queue holds the currently best candidate of each leaf. A word taken by a closer leaf is replaced
+	 * by the next acceptable one
+	 *
+	 * @param rootPosition  the root position, which determines where labels are placed relative to their leaves
+	 * @param leafPositions the locations of the leaves
+	 * @param words         the words
+	 * @return the assignments, in the order in which they were made, each leaf and each word is used at most once
+	 */
+	public static List<LabelAssignment> assignLabels(RootPosition rootPosition, List<Point2D> leafPositions, List<OcrWord> words) {
+		var delta = 10.0;
+
+		var index = new WordBoxIndex(words, word -> {
+			var anchor = anchor(rootPosition.side(), word.boundingBox());
+			return new Rectangle2D(anchor.getX(), anchor.getY(), 0, 0);
+		});
+		var used = new boolean[index.size()];
+
+		record Candidate(double distance, int leaf, int word, PrimitiveIterator.OfInt nearest) {
+		}
+		var queue = new PriorityQueue<Candidate>(Comparator.comparingDouble(Candidate::distance).thenComparingInt(Candidate::leaf).thenComparingInt(Candidate::word));
+
+		// next unused word that is acceptable for the leaf, by increasing distance
+		BiFunction<Integer, PrimitiveIterator.OfInt, Candidate> next = (leaf, nearest) -> {
+			var leafPos = leafPositions.get(leaf);
+			while (nearest.hasNext()) {
+				var w = nearest.nextInt();
+				var bbox = index.getWord(w).boundingBox();
+				if (!used[w] && isAcceptable(rootPosition, leafPos, bbox, delta))
+					return new Candidate(leafPos.distance(anchor(rootPosition.side(), bbox)), leaf, w, nearest);
+			}
+			return null;
+		};
+
+		for (var leaf = 0; leaf < leafPositions.size(); leaf++) {
+			var leafPos = leafPositions.get(leaf);
+			var candidate = next.apply(leaf, index.nearest(leafPos.getX(), leafPos.getY()));
+			if (candidate != null)
+				queue.add(candidate);
+		}
+
+		var assignments = new ArrayList<LabelAssignment>();
+		while (!queue.isEmpty()) {
+			var candidate = queue.poll();
+			if (used[candidate.word()]) {
+				// word was taken by a closer leaf, try the next one
+				var replacement = next.apply(candidate.leaf(), candidate.nearest());
+				if (replacement != null)
+					queue.add(replacement);
+			} else {
+				used[candidate.word()] = true;
+				assignments.add(new LabelAssignment(candidate.leaf(), candidate.word()));
+			}
+		}
+		return assignments;
+	}
+
+	/**
+	 * the point of a word box to which the distance from a leaf is measured
+	 */
+	private static Point2D anchor(RootPosition.Side side, Rectangle2D bbox) {
+		return switch (side) {
+			case Left -> new Point2D(bbox.getMinX(), 0.5 * (bbox.getMinY() + bbox.getMaxY()));
+			case Right -> new Point2D(bbox.getMaxX(), 0.5 * (bbox.getMinY() + bbox.getMaxY()));
+			case Bottom -> new Point2D(0.5 * (bbox.getMinX() + bbox.getMaxX()), bbox.getMaxY());
+			case Top -> new Point2D(0.5 * (bbox.getMinX() + bbox.getMaxX()), bbox.getMinY());
+			case Center -> new Point2D(0.5 * (bbox.getMinX() + bbox.getMaxX()), 0.5 * (bbox.getMinY() + bbox.getMaxY()));
+		};
+	}
+
+	/**
+	 * is the word box positioned acceptably to serve as label of the leaf?
+	 */
+	private static boolean isAcceptable(RootPosition rootPosition, Point2D leafPos, Rectangle2D bbox, double delta) {
+		return switch (rootPosition.side()) {
+			case Left -> bbox.getMinX() >= leafPos.getX() - delta
+						 && leafPos.getY() >= bbox.getMinY() - delta && leafPos.getY() <= bbox.getMaxY() + delta;
+			case Right -> bbox.getMinX() <= leafPos.getX() + delta
+						  && leafPos.getY() >= bbox.getMinY() - delta && leafPos.getY() <= bbox.getMaxY() + delta;
+			case Bottom -> bbox.getMinY() >= leafPos.getY() - delta
+						   && leafPos.getX() >= bbox.getMinX() - delta && leafPos.getX() <= bbox.getMaxX() + delta;
+			case Top -> bbox.getMinY() <= leafPos.getY() + delta
+						&& leafPos.getX() >= bbox.getMinX() - delta && leafPos.getX() <= bbox.getMaxX() + delta;
+			case Center ->
+					rootPosition.location().distance(0.5 * (bbox.getMinX() + bbox.getMaxX()), 0.5 * (bbox.getMinY() + bbox.getMaxY())) >= rootPosition.location().distance(leafPos) - delta;
+		};
+	}
 }
@@ -43,11 +43,11 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * a property settings panel for numbers, boolean and string
+ * a property settings panel for numbers, boolean, string and enum values
  * Daniel Huson, 2.2025
  */
 public class PropertySettingPane {
-	public enum PropertyType {String, Boolean, Double, Integer, Unsupported}
+	public enum PropertyType {String, Boolean, Double, Integer, Enum, Unsupported}
 
 	private final HBox pane;
 	private final ChoiceBox<Property<?>> choiceBox;
@@ -121,6 +121,7 @@ public class PropertySettingPane {
 			case Boolean -> ((BooleanProperty) property).setValue((Boolean) propertyResetMap.get(property));
 			case Double -> ((DoubleProperty) property).setValue((Double) propertyResetMap.get(property));
 			case Integer -> ((IntegerProperty) property).setValue((Integer) propertyResetMap.get(property));
+			case Enum -> setEnumValue(property, propertyResetMap.get(property).toString());
 		}
 	}
 
@@ -130,9 +131,22 @@ public class PropertySettingPane {
 			case Double -> ((DoubleProperty) property).setValue(Double.parseDouble(value));
 			case Integer -> ((IntegerProperty) property).setValue(Integer.parseInt(value));
 			case Boolean -> ((BooleanProperty) property).setValue(Boolean.parseBoolean(value));
+			case Enum -> setEnumValue(property, value);
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	private void setEnumValue(Property<?> property, String value) {
+		var enumClass = ((Enum<?>) property.getValue()).getDeclaringClass();
+		for (var constant : enumClass.getEnumConstants()) {
+			if (constant.name().equalsIgnoreCase(value.trim())) {
+				((Property<Object>) property).setValue(constant);
+				return;
+			}
+		}
+		textField.setText(property.getValue().toString());
+	}
+
 	public PropertyType getPropertyType(Property<?> property) {
 		if (property instanceof DoubleProperty) {
 			return PropertyType.Double;
@@ -142,6 +156,8 @@ public class PropertySettingPane {
 			return PropertyType.Boolean;
 		} else if (property instanceof StringProperty) {
 			return PropertyType.String;
+		} else if (property instanceof ObjectProperty<?> && property.getValue() instanceof Enum<?>) {
+			return PropertyType.Enum;
 		} else return PropertyType.Unsupported;
 	}
 
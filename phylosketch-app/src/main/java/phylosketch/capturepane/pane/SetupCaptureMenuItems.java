@@ -27,7 +27,9 @@ import javafx.event.Event;
 import javafx.scene.layout.AnchorPane;
 import jloda.fx.dialog.ExportImageDialog;
 import jloda.fx.undo.UndoableRedoableCommand;
+import jloda.fx.util.ProgramProperties;
 import phylosketch.capturepane.capture.CaptureService;
+import phylosketch.capturepane.capture.OCR;
 import phylosketch.utils.ScrollPaneUtils;
 import phylosketch.view.DrawView;
 import phylosketch.view.RootPosition;
@@ -102,6 +104,13 @@ public class SetupCaptureMenuItems {
 		});
 		controller.getShowCaptureParametersItem().disableProperty().bind(canSetup.not());
 
+		// recognized words are only kept on disk across sessions, if the user asks for it
+		controller.getCacheLabelsOnDiskItem().setSelected(OCR.isUseDiskCache());
+		controller.getCacheLabelsOnDiskItem().selectedProperty().addListener((v, o, n) -> {
+			OCR.setUseDiskCache(n);
+			ProgramProperties.put(OCR.DISK_CACHE_PROPERTY, n);
+		});
+
 		view.modeProperty().addListener((v, o, n) -> {
 			if (n != DrawView.Mode.Capture) {
 				controller.getShowCaptureParametersItem().setSelected(false);
@@ -115,6 +124,13 @@ public class SetupCaptureMenuItems {
 		controller.getShowCaptureRootLocationItem().disableProperty().bind(canSetup.not());
 		capturePane.hasRootLocationProperty().addListener((v, o, n) -> controller.getShowCaptureRootLocationItem().setSelected(n));
 
+		controller.getCaptureRegionItem().setOnAction(e -> {
+			var regionMode = capturePane.isRegionMode();
+			view.getUndoManager().doAndAdd("capture region mode", () -> capturePane.regionModeProperty().set(regionMode), () -> capturePane.regionModeProperty().set(!regionMode));
+		});
+		controller.getCaptureRegionItem().disableProperty().bind(canSetup.not());
+		capturePane.regionModeProperty().addListener((v, o, n) -> controller.getCaptureRegionItem().setSelected(n));
+
 		capturePane.rootSideProperty().addListener((v, o, n) -> {
 			if (!view.getUndoManager().isPerformingUndoOrRedo())
 				view.getUndoManager().add("root side", () -> capturePane.setRootSide(o), () -> capturePane.setRootSide(n));
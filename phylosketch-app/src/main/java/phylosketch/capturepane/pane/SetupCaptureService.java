@@ -20,14 +20,10 @@
 
 package phylosketch.capturepane.pane;
 
-import javafx.collections.SetChangeListener;
 import javafx.geometry.Point2D;
 import javafx.geometry.Rectangle2D;
+import javafx.scene.Group;
 import javafx.scene.image.ImageView;
-import jloda.fx.selection.SelectionModel;
-import jloda.fx.selection.SetSelectionModel;
-import jloda.fx.util.BasicFX;
-import jloda.fx.util.SelectionEffectBlue;
 import jloda.fx.windownotifications.WindowNotifications;
 import jloda.util.Basic;
 import phylosketch.capturepane.capture.CaptureService;
@@ -59,32 +55,7 @@ public class SetupCaptureService {
 			Basic.caught(e);
 			WindowNotifications.showWarning(controller.getCenterAnchorPane(), "Image capture failed: " + e.getMessage());
 		});
-		final SelectionModel<OcrWord> wordSelection = new SetSelectionModel<>();
-		final SelectionModel<Segment> pathSelection = new SetSelectionModel<>();
-
-		wordSelection.getSelectedItems().addListener((SetChangeListener<? super OcrWord>) e -> {
-			if (e.wasAdded()) {
-				for (var shape : BasicFX.findRecursively(capturePane.getWordsGroup(), s -> s.getUserData() == e.getElementAdded())) {
-					shape.setEffect(SelectionEffectBlue.getInstance());
-				}
-			} else if (e.wasRemoved()) {
-				for (var shape : BasicFX.findRecursively(capturePane.getWordsGroup(), s -> s.getUserData() == e.getElementRemoved())) {
-					shape.setEffect(null);
-				}
-			}
-		});
-
-		pathSelection.getSelectedItems().addListener((SetChangeListener<? super Segment>) e -> {
-			if (e.wasAdded()) {
-				for (var shape : BasicFX.findRecursively(capturePane.getPathsGroup(), s -> s.getUserData() == e.getElementAdded())) {
-					shape.setEffect(SelectionEffectBlue.getInstance());
-				}
-			} else if (e.wasRemoved()) {
-				for (var shape : BasicFX.findRecursively(capturePane.getPathsGroup(), s -> s.getUserData() == e.getElementRemoved())) {
-					shape.setEffect(null);
-				}
-			}
-		});
+		final var overlay = capturePane.getOverlay();
 
 		service.setProgressParentPane(controller.getBottomFlowPane());
 
@@ -100,28 +71,43 @@ public class SetupCaptureService {
 			skeletonImageView.setImage(null);
 		});
 
+		// low-resolution preview of the segments of a large image, replaced when capture finishes
+		var previewGroup = new Group();
+		previewGroup.setMouseTransparent(true);
+		service.previewSegmentsProperty().addListener((v, o, n) -> {
+			previewGroup.getChildren().clear();
+			if (n != null) {
+				for (var segment : transformSegments(capturePane, service.getRegion(), new ArrayList<>(n))) {
+					var path = DrawUtils.createPath(segment);
+					path.setStrokeWidth(3);
+					path.getStrokeDashArray().setAll(6.0, 4.0);
+					previewGroup.getChildren().add(path);
+				}
+				if (!capturePane.getMainPane().getChildren().contains(previewGroup))
+					capturePane.getMainPane().getChildren().add(previewGroup);
+			} else
+				ScrollPaneUtils.runRemoveAndKeepScrollPositions(capturePane, () -> capturePane.getMainPane().getChildren().remove(previewGroup));
+		});
+
 		service.setOnSucceeded(e -> {
 			ScrollPaneUtils.runRemoveAndKeepScrollPositions(capturePane, () -> capturePane.getMainPane().getChildren().remove(skeletonImageView));
 
 			var words = new ArrayList<OcrWord>();
 			var segments = new ArrayList<Segment>();
+			overlay.clear();
 			if (service.getPhase() >= CaptureService.SEGMENTS) {
 				if (true) {
 					skeletonImageView.setImage(service.getSkeletonImage());
-					skeletonImageView.fitWidthProperty().bind(capturePane.getImageView().fitWidthProperty());
-					skeletonImageView.fitHeightProperty().bind(capturePane.getImageView().fitHeightProperty());
+					bindToRegion(skeletonImageView, capturePane.getImageView(), service.getRegion());
 					capturePane.getMainPane().getChildren().add(0, skeletonImageView);
 				}
-				segments.addAll(transformSegments(capturePane, service.getSegments()));
-				capturePane.getPathsGroup().getChildren().clear();
-				if (service.getPhase() < CaptureService.DUSTED) {
-					capturePane.getPathsGroup().getChildren().addAll(DrawUtils.createCircles(service.getEndPoints()));
-				}
-				capturePane.getPathsGroup().getChildren().addAll(DrawUtils.createPaths(segments, pathSelection, () -> true));
+				segments.addAll(transformSegments(capturePane, service.getRegion(), service.getSegments()));
+				var endPoints = (service.getPhase() < CaptureService.DUSTED ? transformPoints(capturePane, service.getRegion(), service.getEndPoints()) : List.<Point>of());
+				overlay.setSegments(segments, endPoints);
 			}
 			if (service.getPhase() >= CaptureService.WORDS) {
-				words.addAll(transformWords(capturePane, service.getWords()));
-				DrawUtils.createWordShapes(words, wordSelection, () -> true, capturePane.getWordsGroup());
+				words.addAll(transformWords(capturePane, service.getRegion(), service.getWords()));
+				overlay.setWords(words);
 			}
 			if (service.getPhase() == CaptureService.PHYLOGENY) {
 				var rootLocation = screenToImage(capturePane.getRootLocationOnScreen(), capturePane.getImageView());
@@ -132,13 +118,23 @@ public class SetupCaptureService {
 		return service;
 	}
 
-	public static List<OcrWord> transformWords(CapturePane capturePane, ArrayList<OcrWord> words) {
+	/**
+	 * maps words from the coordinates of the captured region to pane coordinates
+	 *
+	 * @param capturePane the capture pane
+	 * @param region      the region of the image that was captured, or null for the whole image
+	 * @param words       the words
+	 * @return transformed copies
+	 */
+	public static List<OcrWord> transformWords(CapturePane capturePane, Rectangle2D region, ArrayList<OcrWord> words) {
 		var imageView = capturePane.getImageView();
+		var dx = (region != null ? region.getMinX() : 0);
+		var dy = (region != null ? region.getMinY() : 0);
 		var list = new ArrayList<OcrWord>();
 		for (var word : words) {
 			var bbox = word.boundingBox();
-			var aPt = imageToPaneCoordinates(imageView, bbox.getMinX(), bbox.getMinY());
-			var bPt = imageToPaneCoordinates(imageView, bbox.getMaxX(), bbox.getMaxY());
+			var aPt = imageToPaneCoordinates(imageView, dx + bbox.getMinX(), dy + bbox.getMinY());
+			var bPt = imageToPaneCoordinates(imageView, dx + bbox.getMaxX(), dy + bbox.getMaxY());
 			var x = (int) Math.min(aPt.getX(), bPt.getX());
 			var width = (int) Math.abs(aPt.getX() - bPt.getX());
 			var y = (int) Math.min(aPt.getY(), bPt.getY());
@@ -148,19 +144,63 @@ public class SetupCaptureService {
 		return list;
 	}
 
-	public static List<Segment> transformSegments(CapturePane capturePane, ArrayList<Segment> segments) {
+	/**
+	 * maps segments from the coordinates of the captured region to pane coordinates
+	 *
+	 * @param capturePane the capture pane
+	 * @param region      the region of the image that was captured, or null for the whole image
+	 * @param segments    the segments
+	 * @return transformed copies
+	 */
+	public static List<Segment> transformSegments(CapturePane capturePane, Rectangle2D region, ArrayList<Segment> segments) {
 		var imageView = capturePane.getImageView();
+		var dx = (region != null ? region.getMinX() : 0);
+		var dy = (region != null ? region.getMinY() : 0);
 		var list = new ArrayList<Segment>();
 		for (var segment : segments) {
 			var copy = new Segment();
 			copy.points().addAll(segment.points().stream()
-					.map(p -> imageToPaneCoordinates(imageView, p.x(), p.y()))
+					.map(p -> imageToPaneCoordinates(imageView, dx + p.x(), dy + p.y()))
 					.map(p -> new Point((int) p.getX(), (int) p.getY())).toList());
 			list.add(copy);
 		}
 		return list;
 	}
 
+	/**
+	 * maps points from the coordinates of the captured region to pane coordinates
+	 *
+	 * @param capturePane the capture pane
+	 * @param region      the region of the image that was captured, or null for the whole image
+	 * @param points      the points
+	 * @return transformed copies
+	 */
+	public static List<Point> transformPoints(CapturePane capturePane, Rectangle2D region, List<Point> points) {
+		var imageView = capturePane.getImageView();
+		var dx = (region != null ? region.getMinX() : 0);
+		var dy = (region != null ? region.getMinY() : 0);
+		return points.stream().map(p -> imageToPaneCoordinates(imageView, dx + p.x(), dy + p.y()))
+				.map(p -> new Point((int) p.getX(), (int) p.getY())).toList();
+	}
+
+	/**
+	 * places an image view showing the given region of the image on top of that region in the main image view
+	 */
+	private static void bindToRegion(ImageView regionImageView, ImageView imageView, Rectangle2D region) {
+		if (region == null) {
+			regionImageView.layoutXProperty().bind(imageView.layoutXProperty());
+			regionImageView.layoutYProperty().bind(imageView.layoutYProperty());
+			regionImageView.fitWidthProperty().bind(imageView.fitWidthProperty());
+			regionImageView.fitHeightProperty().bind(imageView.fitHeightProperty());
+		} else {
+			var image = imageView.getImage();
+			regionImageView.layoutXProperty().bind(imageView.layoutXProperty().add(imageView.fitWidthProperty().multiply(region.getMinX() / image.getWidth())));
+			regionImageView.layoutYProperty().bind(imageView.layoutYProperty().add(imageView.fitHeightProperty().multiply(region.getMinY() / image.getHeight())));
+			regionImageView.fitWidthProperty().bind(imageView.fitWidthProperty().multiply(region.getWidth() / image.getWidth()));
+			regionImageView.fitHeightProperty().bind(imageView.fitHeightProperty().multiply(region.getHeight() / image.getHeight()));
+		}
+	}
+
 	public static Point2D imageToPaneCoordinates(ImageView imageView, double imageX, double imageY) {
 		double viewX = (imageX / imageView.getImage().getWidth()) * imageView.getBoundsInLocal().getWidth();
 		double viewY = (imageY / imageView.getImage().getHeight()) * imageView.getBoundsInLocal().getHeight();
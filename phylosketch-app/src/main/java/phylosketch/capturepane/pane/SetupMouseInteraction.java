@@ -20,8 +20,12 @@
 
 package phylosketch.capturepane.pane;
 
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.ObjectProperty;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.Node;
+import javafx.scene.image.ImageView;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import phylosketch.view.DrawView;
@@ -42,36 +46,63 @@ public class SetupMouseInteraction {
 		if (false)
 			capturePane.getMainPane().setOnMouseClicked(view.getOnMouseClicked());
 
-		if (false) {
-			selectionRectangle.set(new Rectangle(10, 10));
-			selectionRectangle.get().setFill(Color.TRANSPARENT);
-			selectionRectangle.get().setStroke(Color.LIGHTBLUE);
+		{
+			// region of interest: in region mode, the user drags a rectangle over the image to restrict capture to it
+			var imageView = capturePane.getImageView();
 
-			capturePane.getMainPane().getChildren().add(selectionRectangle.get());
+			selectionRectangle.set(new Rectangle());
+			var rect = selectionRectangle.get();
+			rect.setFill(Color.TRANSPARENT);
+			rect.setStroke(Color.LIGHTBLUE);
+			rect.setStrokeWidth(2);
+			rect.getStrokeDashArray().setAll(6.0, 6.0);
+			rect.setMouseTransparent(true);
+			rect.setVisible(false);
+			capturePane.getMainPane().getChildren().add(rect);
 
-			capturePane.getImageView().setOnMousePressed(e -> {
-				mouseX = mouseDownX = e.getScreenX();
-				mouseY = mouseDownY = e.getScreenY();
-				var rect = selectionRectangle.get();
-				rect.setX(mouseX);
-				rect.setY(mouseY);
-				rect.setWidth(0);
-				rect.setHeight(0);
-				rect.setVisible(false);
-				e.consume();
+			InvalidationListener updateRectangle = e -> {
+				var region = capturePane.getCaptureRegion();
+				if (capturePane.isRegionMode() && region != null && imageView.getImage() != null) {
+					var a = SetupCaptureService.imageToPaneCoordinates(imageView, region.getMinX(), region.getMinY());
+					var b = SetupCaptureService.imageToPaneCoordinates(imageView, region.getMaxX(), region.getMaxY());
+					setRectangle(rect, a, b);
+					rect.setVisible(true);
+				} else
+					rect.setVisible(false);
+			};
+			capturePane.captureRegionProperty().addListener(updateRectangle);
+			capturePane.regionModeProperty().addListener(updateRectangle);
+			imageView.fitWidthProperty().addListener(updateRectangle);
+			imageView.fitHeightProperty().addListener(updateRectangle);
+
+			imageView.setOnMousePressed(e -> {
+				if (capturePane.isRegionMode()) {
+					mouseDownX = e.getX();
+					mouseDownY = e.getY();
+					e.consume();
+				}
 			});
 
-			capturePane.getImageView().setOnMouseDragged(e -> {
-				var dx = e.getScreenX() - mouseX;
-				var dy = e.getScreenY() - mouseY;
-				var rect = selectionRectangle.get();
-				rect.setWidth(rect.getWidth() + dx);
-				rect.setHeight(rect.getHeight() + dy);
-				rect.setVisible(true);
-				e.consume();
+			imageView.setOnMouseDragged(e -> {
+				if (capturePane.isRegionMode()) {
+					setRectangle(rect, imageView.localToParent(mouseDownX, mouseDownY), imageView.localToParent(e.getX(), e.getY()));
+					rect.setVisible(true);
+					e.consume();
+				}
+			});
 
-				mouseX = mouseDownX = e.getScreenX();
-				mouseY = mouseDownY = e.getScreenY();
+			imageView.setOnMouseReleased(e -> {
+				if (capturePane.isRegionMode()) {
+					if (!e.isStillSincePress() && imageView.getImage() != null) {
+						var a = localToImage(imageView, mouseDownX, mouseDownY);
+						var b = localToImage(imageView, e.getX(), e.getY());
+						var oldRegion = capturePane.getCaptureRegion();
+						var newRegion = new Rectangle2D(Math.min(a.getX(), b.getX()), Math.min(a.getY(), b.getY()), Math.abs(a.getX() - b.getX()), Math.abs(a.getY() - b.getY()));
+						view.getUndoManager().doAndAdd("capture region", () -> capturePane.setCaptureRegion(oldRegion), () -> capturePane.setCaptureRegion(newRegion));
+					} else
+						updateRectangle.invalidated(null);
+					e.consume();
+				}
 			});
 		}
 
@@ -115,4 +146,21 @@ public class SetupMouseInteraction {
 			});
 		}
 	}
+
+	private static void setRectangle(Rectangle rect, Point2D a, Point2D b) {
+		rect.setX(Math.min(a.getX(), b.getX()));
+		rect.setY(Math.min(a.getY(), b.getY()));
+		rect.setWidth(Math.abs(a.getX() - b.getX()));
+		rect.setHeight(Math.abs(a.getY() - b.getY()));
+	}
+
+	/**
+	 * maps a location in the local coordinates of the image view to image coordinates, clamped to the image
+	 */
+	private static Point2D localToImage(ImageView imageView, double localX, double localY) {
+		var image = imageView.getImage();
+		var x = localX / imageView.getBoundsInLocal().getWidth() * image.getWidth();
+		var y = localY / imageView.getBoundsInLocal().getHeight() * image.getHeight();
+		return new Point2D(Math.max(0, Math.min(image.getWidth(), x)), Math.max(0, Math.min(image.getHeight(), y)));
+	}
 }
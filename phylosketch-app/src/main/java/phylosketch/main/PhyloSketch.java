@@ -62,6 +62,7 @@ public class PhyloSketch extends Application {
         MainWindowPresenter.SUPPORTS_CAPTURE = true;
         MainWindowPresenter.SUPPORTS_HELP_WINDOW = true;
         OCR.setOCRService(new OCRService());
+        OCR.setUseDiskCache(ProgramProperties.get(OCR.DISK_CACHE_PROPERTY, false));
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             OCR.getOCRService().shutdown();
             ProgramProperties.store();
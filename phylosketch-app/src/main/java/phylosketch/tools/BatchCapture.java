@@ -0,0 +1,363 @@
+/*
+ * BatchCapture.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.tools;
+
+import javafx.application.Platform;
+import javafx.geometry.Point2D;
+import javafx.scene.image.ImageView;
+import jloda.fx.util.ArgsOptions;
+import jloda.phylo.PhyloTree;
+import jloda.util.*;
+import jloda.util.progress.ProgressPercentage;
+import jloda.util.progress.ProgressSilent;
+import phylosketch.capturepane.capture.*;
+import phylosketch.capturepane.pane.PhylogenyCapture;
+import phylosketch.io.PhyloSketchIO;
+import phylosketch.main.Version;
+import phylosketch.ocr.OCRService;
+import phylosketch.ocr.OcrWord;
+import phylosketch.ocr.utils.ImageIORasters;
+import phylosketch.view.DrawView;
+import phylosketch.view.NewickUtils;
+import phylosketch.view.RootPosition;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * captures phylogenies from all images in a directory, without user interaction
+ * Daniel Huson, 10.2026
+ */
+public class BatchCapture {
+	private static final String CSV_HEADER = "image,width,height,convert_ms,segments_ms,ocr_ms,dust_ms,phylogeny_ms,total_ms,segments,words,nodes,edges,status";
+
+	public static void main(String[] args) {
+		try {
+			PhyloTree.SUPPORT_RICH_NEWICK = true;
+			ProgramProperties.setProgramName("BatchCapture");
+			ProgramProperties.setProgramVersion(Version.SHORT_DESCRIPTION);
+
+			PeakMemoryUsageMonitor.start();
+			(new BatchCapture()).run(args);
+			PeakMemoryUsageMonitor.report();
+			System.exit(0);
+		} catch (Exception ex) {
+			Basic.caught(ex);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * run
+	 */
+	private void run(String[] args) throws Exception {
+		final ArgsOptions options = new ArgsOptions(args, this, "Captures phylogenies from all images in a directory");
+		options.setVersion(ProgramProperties.getProgramVersion());
+		options.setLicense("This is free software, licensed under the terms of the GNU General Public License, Version 3.");
+		options.setAuthors("Daniel H. Huson");
+
+		options.comment("Input and output");
+		var inputDirectory = options.getOptionMandatory("-i", "input", "Input directory containing images (png, jpg, gif or bmp)", "");
+		var outputDirectory = options.getOption("-o", "output", "Output directory (default: input directory)", "");
+		var csvFile = options.getOption("-c", "csv", "Output CSV file with timings and counts (default: capture.csv in output directory)", "");
+		var metricsFile = options.getOption("-j", "metrics", "Output JSON file with time, CPU time, allocations and counts per phase (default: metrics.json in output directory)", "");
+
+		options.comment("Options");
+		var rootSide = RootPosition.Side.valueOf(options.getOption("-r", "rootSide", "Side of the image at which the root is located", RootPosition.Side.values(), RootPosition.Side.Left.name()));
+		var runOCR = options.getOption("-w", "words", "Recognize words to label leaves", true);
+		var ocrDiskCache = options.getOption("-dc", "diskCache", "Cache recognized words in " + OCR.getDiskCacheDirectory() + " across runs", false);
+		var capturePhylogeny = options.getOption("-p", "phylogeny", "Capture phylogeny and write .psketch and .nwk files", true);
+		var maxMegaPixels = options.getOption("-mp", "maxMegaPixels", "Maximum number of megapixels of the images processed at the same time", 256);
+
+		ProgramExecutorService.setNumberOfCoresToUse(options.getOption("-th", "threads", "Set number of threads to use", Runtime.getRuntime().availableProcessors()));
+		options.done();
+
+		if (!new File(inputDirectory).isDirectory())
+			throw new UsageException("--input must be a directory: " + inputDirectory);
+		if (outputDirectory.isBlank())
+			outputDirectory = inputDirectory;
+		if (csvFile.isBlank())
+			csvFile = new File(outputDirectory, "capture.csv").getPath();
+		if (metricsFile.isBlank())
+			metricsFile = new File(outputDirectory, "metrics.json").getPath();
+		if (maxMegaPixels < 1)
+			throw new UsageException("--maxMegaPixels must be positive, got: " + maxMegaPixels);
+		Files.createDirectories(Path.of(outputDirectory));
+
+		var files = new ArrayList<>(Arrays.asList(Objects.requireNonNull(new File(inputDirectory).listFiles(f -> f.isFile() && isImageFile(f.getName())))));
+		files.sort(Comparator.comparing(File::getName));
+		if (files.isEmpty())
+			throw new UsageException("No images found in: " + inputDirectory);
+		if (options.isVerbose())
+			System.err.println("Images: " + files.size());
+
+		if (runOCR) {
+			var ocrService = new OCRService();
+			OCR.setOCRService(ocrService);
+			OCR.setUseDiskCache(ocrDiskCache);
+			// the images are captured in parallel, all share the provider's threads, which bound the number of recognitions running at once
+			ocrService.setThreads(ProgramExecutorService.getNumberOfCoresToUse());
+			if (!ocrService.isAvailable()) {
+				System.err.println("Warning: OCR not available, leaves will not be labeled");
+				runOCR = false;
+			}
+		}
+
+		// building the phylogeny uses the drawing view, which requires the JavaFX toolkit, but no window
+		if (capturePhylogeny && !startToolkit()) {
+			System.err.println("Warning: JavaFX toolkit not available, only computing segments and words");
+			capturePhylogeny = false;
+		}
+
+		// bound the memory used by images in flight by their total number of pixels
+		var memoryBudget = new Semaphore(maxMegaPixels);
+
+		var parameters = new Parameters();
+		var outputDir = new File(outputDirectory);
+		var doOCR = runOCR;
+		var doPhylogeny = capturePhylogeny;
+
+		var results = new ConcurrentHashMap<File, String>();
+		var metricsMap = new ConcurrentHashMap<File, CaptureMetrics>();
+		try (var progress = new ProgressPercentage("Capturing")) {
+			ExecuteInParallel.apply(files, file -> {
+				var megaPixels = Math.max(1, Math.min(maxMegaPixels, getMegaPixels(file)));
+				memoryBudget.acquireUninterruptibly(megaPixels);
+				var metrics = new CaptureMetrics(Runnable::run);
+				metricsMap.put(file, metrics); // also keep the phases completed before a failure
+				try {
+					results.put(file, capture(file, outputDir, parameters, rootSide, doOCR, doPhylogeny, metrics));
+				} catch (Exception ex) {
+					results.put(file, "%s,,,,,,,,,,,,,%s".formatted(quoteCSV(file.getName()), quoteCSV("failed: " + ex.getMessage())));
+				} finally {
+					memoryBudget.release(megaPixels);
+				}
+			}, ProgramExecutorService.getNumberOfCoresToUse(), progress);
+		}
+
+		if (options.isVerbose())
+			System.err.println("Writing: " + csvFile);
+		try (var w = FileUtils.getOutputWriterPossiblyZIPorGZIP(csvFile)) {
+			w.write(CSV_HEADER + "\n");
+			for (var file : files) {
+				w.write(results.getOrDefault(file, quoteCSV(file.getName()) + ",,,,,,,,,,,,,no result") + "\n");
+			}
+		}
+
+		if (options.isVerbose())
+			System.err.println("Writing: " + metricsFile);
+		try (var w = FileUtils.getOutputWriterPossiblyZIPorGZIP(metricsFile)) {
+			w.write("{\"images\":[\n");
+			var first = true;
+			for (var file : files) {
+				var metrics = metricsMap.get(file);
+				if (metrics != null) {
+					w.write((first ? "" : ",\n") + "{\"image\":%s,\"metrics\":%s}".formatted(CaptureMetrics.quote(file.getName()), metrics.toJson()));
+					first = false;
+				}
+			}
+			w.write("\n]}\n");
+		}
+	}
+
+	/**
+	 * captures the phylogeny from a single image. The compute stages run on the calling thread, only
+	 * building the phylogeny in a drawing view runs on the JavaFX application thread
+	 *
+	 * @param metrics records the phases
+	 * @return line of CSV output
+	 */
+	private static String capture(File file, File outputDir, Parameters parameters, RootPosition.Side rootSide, boolean runOCR, boolean capturePhylogeny, CaptureMetrics metrics) throws Exception {
+		var progress = new ProgressSilent();
+		var start = System.currentTimeMillis();
+
+		var measurement = metrics.start("Read", file.length());
+		var image = ImageIORasters.read(file.toPath());
+		var pixels = (long) image.getWidth() * image.getHeight();
+		measurement.stop(pixels, image.memoryBytes());
+
+		var time = System.currentTimeMillis();
+		measurement = metrics.start("Convert", pixels);
+		var conversion = ImageUtils.convert(image, runOCR);
+		var grayScaleBytes = (conversion.grayScale() != null ? conversion.grayScale().memoryBytes() : 0);
+		measurement.stop(pixels, image.memoryBytes() + conversion.luminance().memoryBytes() + grayScaleBytes);
+		var convertTime = System.currentTimeMillis() - time;
+
+		time = System.currentTimeMillis();
+		var segments = CaptureStages.computeSegments(progress, conversion, parameters, false, metrics);
+		var segmentsTime = System.currentTimeMillis() - time;
+
+		time = System.currentTimeMillis();
+		List<OcrWord> allWords = List.of();
+		if (runOCR) {
+			measurement = metrics.start("OCR", pixels);
+			allWords = OCR.getWords(conversion.grayScale());
+			measurement.stop(allWords.size(), grayScaleBytes);
+		}
+		measurement = metrics.start("Words", allWords.size());
+		var words = CaptureStages.filterWords(allWords, parameters);
+		measurement.stop(words.size(), 0);
+		var ocrTime = System.currentTimeMillis() - time;
+		conversion = null; // release the rasters before the next stages
+
+		time = System.currentTimeMillis();
+		var dusted = CaptureStages.removeDust(progress, new ArrayList<>(segments.segments()), allWords, parameters, metrics);
+		var dustTime = System.currentTimeMillis() - time;
+
+		var nodes = 0;
+		var edges = 0;
+		var status = "ok";
+		var phylogenyTime = 0L;
+		if (capturePhylogeny) {
+			time = System.currentTimeMillis();
+			var rootLocation = determineRootLocation(rootSide, dusted, image.getWidth(), image.getHeight());
+			if (rootLocation == null)
+				status = "no segments";
+			else {
+				var name = FileUtils.replaceFileSuffix(file.getName(), "");
+				var view = runOnToolkitThread(() -> {
+					var phylogenyMeasurement = metrics.start("Phylogeny", dusted.size());
+					var drawView = new DrawView();
+					new PhylogenyCapture().apply(drawView, rootLocation, rootSide, new ArrayList<>(dusted), words);
+					phylogenyMeasurement.stop(drawView.getGraph().getNumberOfNodes(), 0);
+					return drawView;
+				});
+				// submitted separately, so that label layout scheduled while capturing has been applied
+				var counts = runOnToolkitThread(() -> {
+					var saveMeasurement = metrics.start("Save", view.getGraph().getNumberOfNodes());
+					var backgroundImageView = new ImageView();
+					backgroundImageView.setVisible(false);
+					PhyloSketchIO.save(new File(outputDir, name + ".psketch"), view, backgroundImageView);
+					try (var w = FileUtils.getOutputWriterPossiblyZIPorGZIP(new File(outputDir, name + ".nwk").getPath())) {
+						w.write(NewickUtils.toBracketString(view));
+					}
+					saveMeasurement.stop(view.getGraph().getNumberOfNodes(), 0);
+					return new int[]{view.getGraph().getNumberOfNodes(), view.getGraph().getNumberOfEdges()};
+				});
+				nodes = counts[0];
+				edges = counts[1];
+			}
+			phylogenyTime = System.currentTimeMillis() - time;
+		}
+		var totalTime = System.currentTimeMillis() - start;
+
+		return "%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%s".formatted(quoteCSV(file.getName()), image.getWidth(), image.getHeight(),
+				convertTime, segmentsTime, ocrTime, dustTime, phylogenyTime, totalTime, dusted.size(), words.size(), nodes, edges, status);
+	}
+
+	/**
+	 * as there is no user to place the root, use the end point of a segment that is farthest in the direction of the root side
+	 *
+	 * @return root location, or null, if there are no segments
+	 */
+	public static Point2D determineRootLocation(RootPosition.Side rootSide, List<Segment> segments, double width, double height) {
+		var center = new Point2D(0.5 * width, 0.5 * height);
+		Point best = null;
+		var bestScore = Double.MAX_VALUE;
+		for (var segment : segments) {
+			for (var point : List.of(segment.first(), segment.last())) {
+				var score = switch (rootSide) {
+					case Left -> point.x();
+					case Right -> -point.x();
+					case Top -> point.y();
+					case Bottom -> -point.y();
+					case Center -> point.distance(center);
+				};
+				if (score < bestScore) {
+					best = point;
+					bestScore = score;
+				}
+			}
+		}
+		return best == null ? null : best.point2D();
+	}
+
+	/**
+	 * quote a CSV value, if it contains a comma, quote or line break, doubling any quotes
+	 */
+	private static String quoteCSV(String value) {
+		if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r"))
+			return "\"" + value.replace("\"", "\"\"") + "\"";
+		else
+			return value;
+	}
+
+	private static boolean isImageFile(String name) {
+		var lower = name.toLowerCase();
+		return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".gif") || lower.endsWith(".bmp");
+	}
+
+	/**
+	 * gets the size of an image from its header, without decoding it
+	 */
+	private static int getMegaPixels(File file) {
+		try (var in = ImageIO.createImageInputStream(file)) {
+			var readers = ImageIO.getImageReaders(in);
+			if (readers.hasNext()) {
+				var reader = readers.next();
+				try {
+					reader.setInput(in);
+					return (int) Math.ceil((double) reader.getWidth(0) * reader.getHeight(0) / 1000000.0);
+				} finally {
+					reader.dispose();
+				}
+			}
+		} catch (IOException ignored) {
+		}
+		return (int) Math.ceil(file.length() / 1000000.0); // compressed size as lower bound
+	}
+
+	/**
+	 * starts the JavaFX toolkit, without opening any window
+	 *
+	 * @return true, if the toolkit is running
+	 */
+	private static boolean startToolkit() {
+		try {
+			Platform.startup(() -> {
+			});
+			Platform.setImplicitExit(false);
+			return true;
+		} catch (IllegalStateException ex) {
+			return true; // already running
+		} catch (Throwable ex) {
+			return false;
+		}
+	}
+
+	private static <T> T runOnToolkitThread(Callable<T> callable) throws Exception {
+		var task = new FutureTask<>(callable);
+		Platform.runLater(task);
+		try {
+			return task.get();
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof Exception exception)
+				throw exception;
+			else
+				throw ex;
+		}
+	}
+}
@@ -319,6 +319,9 @@ public class MainWindowController {
 	@FXML
 	CheckMenuItem showCaptureParametersItem;
 
+	@FXML
+	CheckMenuItem cacheLabelsOnDiskItem;
+
 	@FXML
 	MenuItem loadCaptureImageItem;
 
@@ -331,6 +334,9 @@ public class MainWindowController {
 	@FXML
 	CheckMenuItem showCaptureRootLocationItem;
 
+	@FXML
+	CheckMenuItem captureRegionItem;
+
 	@FXML
 	Menu rootSideMenu;
 
@@ -566,6 +572,7 @@ public class MainWindowController {
 		clearCaptureImageItem.setGraphic(MaterialIcons.graphic(MaterialIcons.hide_image));
 		saveCaptureImageItem.setGraphic(MaterialIcons.graphic(MaterialIcons.save_as));
 		showCaptureRootLocationItem.setGraphic(MaterialIcons.graphic(MaterialIcons.rocket, "-fx-rotate: 90;"));
+		captureRegionItem.setGraphic(MaterialIcons.graphic(MaterialIcons.crop));
 
 		rootSideMenu.setGraphic(MaterialIcons.graphic(MaterialIcons.zoom_out_map, "-fx-rotate: 45;"));
 
@@ -1053,6 +1060,10 @@ public class MainWindowController {
 		return showCaptureParametersItem;
 	}
 
+	public CheckMenuItem getCacheLabelsOnDiskItem() {
+		return cacheLabelsOnDiskItem;
+	}
+
 	public MenuItem getLoadCaptureImageItem() {
 		return loadCaptureImageItem;
 	}
@@ -1069,6 +1080,10 @@ public class MainWindowController {
 		return showCaptureRootLocationItem;
 	}
 
+	public CheckMenuItem getCaptureRegionItem() {
+		return captureRegionItem;
+	}
+
 	public CheckMenuItem getCaptureLinesItem() {
 		return captureLinesItem;
 	}
@@ -0,0 +1,136 @@
+/*
+ * BenchmarkImages.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.benchmarks;
+
+import javafx.geometry.Rectangle2D;
+import phylosketch.capturepane.capture.BitRaster;
+import phylosketch.capturepane.capture.ImageUtils;
+import phylosketch.capturepane.capture.Point;
+import phylosketch.ocr.ArgbRaster;
+import phylosketch.ocr.OcrWord;
+import phylosketch.ocr.utils.ImageIORasters;
+
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * loads the example images used by the benchmarks
+ * The image directory defaults to examples/images and can be set using -Dphylosketch.examples=dir
+ * Daniel Huson, 10.2026
+ */
+public class BenchmarkImages {
+	public static final String EXAMPLES_PROPERTY = "phylosketch.examples";
+
+	/**
+	 * loads an example image
+	 *
+	 * @param name the file name, e.g. mammals.png
+	 * @return the image
+	 */
+	public static ArgbRaster load(String name) throws IOException {
+		return ImageIORasters.read(new File(getDirectory(), name).toPath());
+	}
+
+	/**
+	 * loads an example image and scales it, so that the stages can be measured at several resolutions
+	 *
+	 * @param name  the file name
+	 * @param scale the scale factor, using bilinear interpolation
+	 * @return the scaled image
+	 */
+	public static ArgbRaster load(String name, double scale) throws IOException {
+		var raster = load(name);
+		if (scale == 1.0)
+			return raster;
+		var source = ImageIORasters.toBufferedImage(raster);
+		var width = Math.max(1, (int) Math.round(scale * raster.getWidth()));
+		var height = Math.max(1, (int) Math.round(scale * raster.getHeight()));
+		var target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		var graphics = target.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.drawImage(source, 0, 0, width, height, null);
+		} finally {
+			graphics.dispose();
+		}
+		return ImageIORasters.fromBufferedImage(target);
+	}
+
+	/**
+	 * creates a fixed set of words, as OCR would report them for labels next to the given points: a genus and a species
+	 * name to the right of each point, so that joining consecutive words and matching labels have realistic input
+	 *
+	 * @param points     the points, e.g. the end points of the skeleton
+	 * @param textHeight the height of the words
+	 * @return the words
+	 */
+	public static List<OcrWord> createWords(List<Point> points, double textHeight) {
+		var words = new ArrayList<OcrWord>();
+		var letterWidth = 0.6 * textHeight;
+		var count = 0;
+		for (var point : points) {
+			var genus = "Genus" + count;
+			var species = "species" + count;
+			var x = point.x() + 0.5 * textHeight;
+			var y = point.y() - 0.5 * textHeight;
+			words.add(new OcrWord(genus, 90f, new Rectangle2D(x, y, letterWidth * genus.length(), textHeight)));
+			x += letterWidth * (genus.length() + 1);
+			words.add(new OcrWord(species, 85f, new Rectangle2D(x, y, letterWidth * species.length(), textHeight)));
+			count++;
+		}
+		return words;
+	}
+
+	/**
+	 * loads an example image and thresholds it, as done in the capture pipeline
+	 */
+	public static BitRaster loadBinary(String name) throws IOException {
+		return ImageUtils.convertToBinaryRaster(load(name));
+	}
+
+	static File getDirectory() {
+		var dir = new File(System.getProperty(EXAMPLES_PROPERTY, "examples/images"));
+		if (!dir.isDirectory()) {
+			var parent = new File("..", dir.getPath());
+			if (parent.isDirectory())
+				return parent;
+		}
+		return dir;
+	}
+
+	/**
+	 * copies a binary raster into the int[][] representation used by the legacy implementations
+	 */
+	public static int[][] toMatrix(BitRaster raster) {
+		var matrix = new int[raster.getHeight()][raster.getWidth()];
+		for (var y = 0; y < raster.getHeight(); y++) {
+			for (var x = 0; x < raster.getWidth(); x++) {
+				if (raster.get(x, y))
+					matrix[y][x] = 1;
+			}
+		}
+		return matrix;
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * BenchmarkMain.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package phylosketch.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * runs the benchmarks with allocation profiling and a JSON report by default
+ * Accepts all JMH command line options. Unless given, adds -prof gc, so that allocation rates (gc.alloc.rate.norm,
+ * bytes per operation) are reported next to the times, and writes the results to jmh-result.json, so that runs
+ * can be compared
+ * Daniel Huson, 10.2026
+ */
+public class BenchmarkMain {
+	public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws Exception {
+		var arguments = new ArrayList<>(List.of(args));
+		if (!arguments.contains("-prof")) {
+			arguments.add("-prof");
+			arguments.add("gc");
+		}
+		if (!arguments.contains("-rf")) {
+			arguments.add("-rf");
+			arguments.add("json");
+		}
+		if (!arguments.contains("-rff")) {
+			arguments.add("-rff");
+			arguments.add(DEFAULT_RESULT_FILE);
+		}
+		org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * CaptureStagesBenchmark.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package phylosketch.benchmarks;
+
+import javafx.geometry.Point2D;
+import jloda.util.CanceledException;
+import jloda.util.progress.ProgressSilent;
+import org.openjdk.jmh.annotations.*;
+import phylosketch.capturepane.capture.*;
+import phylosketch.capturepane.pane.PhylogenyCapture;
+import phylosketch.ocr.ArgbRaster;
+import phylosketch.ocr.OcrWord;
+import phylosketch.view.RootPosition;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures each stage of the capture pipeline on example images at several resolutions.
+ * The input of each stage is the output of the previous ones, computed once per trial.
+ * Stages that modify their input work on a copy, which is included in the measurement.
+ * Words are not recognized, but created next to the end points, see {@link BenchmarkImages#createWords(List, double)}.
+ * Run using {@link BenchmarkMain} to also report allocations.
+ * Daniel Huson, 10.2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class CaptureStagesBenchmark {
+	@Param({"small-tree.png", "mammals.png", "network-ej.png", "salamanders.jpg"})
+	public String image;
+
+	@Param({"0.5", "1.0", "2.0"})
+	public double scale;
+
+	private final Parameters parameters = new Parameters();
+	private final ProgressSilent progress = new ProgressSilent();
+
+	private ArgbRaster raster;
+	private ImageUtils.Conversion conversion;
+	private BitRaster binary;
+	private BitRaster skeleton;
+	private ArrayList<Segment> segments;
+	private List<Point> leaves;
+	private List<Point2D> leafPositions;
+	private RootPosition rootPosition;
+	private List<OcrWord> words;
+	private List<OcrWord> labels;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, CanceledException {
+		raster = BenchmarkImages.load(image, scale);
+		conversion = ImageUtils.convert(raster, false);
+		binary = ImageUtils.convertToBinaryRaster(conversion, parameters);
+
+		skeleton = binary.copy();
+		Skeletonization.apply(skeleton);
+		if (DotConnector.apply(skeleton))
+			Skeletonization.apply(skeleton);
+
+		var endPoints = new ArrayList<Point>();
+		segments = new ArrayList<>();
+		CapturePointsSegments.apply(progress, skeleton, 0, endPoints, segments);
+
+		leaves = JunctionDetector.apply(skeleton).endPointList();
+		words = BenchmarkImages.createWords(leaves, Math.max(parameters.getMinTextHeight(), 12 * scale));
+		labels = CaptureStages.filterWords(words, parameters);
+
+		leafPositions = leaves.stream().map(Point::point2D).toList();
+		rootPosition = new RootPosition(RootPosition.Side.Left, new Point2D(0, 0.5 * raster.getHeight()));
+	}
+
+	/**
+	 * single pass over the pixels, followed by thresholding
+	 */
+	@Benchmark
+	public BitRaster binarize() {
+		return ImageUtils.convertToBinaryRaster(ImageUtils.convert(raster, false), parameters);
+	}
+
+	@Benchmark
+	public BitRaster thin() {
+		var work = binary.copy();
+		Skeletonization.apply(work);
+		return work;
+	}
+
+	@Benchmark
+	public JunctionDetector.Result junctions() {
+		return JunctionDetector.apply(skeleton);
+	}
+
+	/**
+	 * junction detection, tracing of the segments between end points and junctions, and removal of contained segments
+	 */
+	@Benchmark
+	public List<Segment> trace() throws CanceledException {
+		var endPoints = new ArrayList<Point>();
+		var result = new ArrayList<Segment>();
+		CapturePointsSegments.apply(progress, skeleton, 0, endPoints, result);
+		return result;
+	}
+
+	@Benchmark
+	public List<Segment> dust() throws CanceledException {
+		return DustRemoval.apply(progress, new ArrayList<>(segments), parameters.getMaxDustDistance(), parameters.getMinDustExtent());
+	}
+
+	/**
+	 * filtering and joining of consecutive words into labels
+	 */
+	@Benchmark
+	public List<OcrWord> joinWords() {
+		return CaptureStages.filterWords(words, parameters);
+	}
+
+	/**
+	 * the assignment of labels to leaves used when capturing the phylogeny, for a root on the left, namely indexing
+	 * the labels, nearest-label queries and the reassignment of labels claimed by more than one leaf
+	 */
+	@Benchmark
+	public List<PhylogenyCapture.LabelAssignment> matchLabels() {
+		return PhylogenyCapture.assignLabels(rootPosition, leafPositions, labels);
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * EquivalenceCheck.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.benchmarks;
+
+import phylosketch.capturepane.capture.BitRaster;
+import phylosketch.capturepane.capture.DotConnector;
+import phylosketch.capturepane.capture.Skeletonization;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * regression check that the optimized thinning and dot chaining produce exactly the same rasters as the legacy
+ * implementations, on the example images and on seeded synthetic rasters
+ * Run from the project root with java -cp phylosketch-benchmarks/target/benchmarks.jar phylosketch.benchmarks.EquivalenceCheck,
+ * optionally followed by the number of synthetic rasters. Exits with status 1 if any raster differs
+ * Daniel Huson, 10.2026
+ */
+public class EquivalenceCheck {
+	private static final int DEFAULT_SYNTHETIC = 20;
+
+	private int checked;
+	private int failed;
+
+	public static void main(String[] args) throws IOException {
+		var synthetic = (args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SYNTHETIC);
+		var check = new EquivalenceCheck();
+
+		var files = BenchmarkImages.getDirectory().listFiles(f -> f.isFile() && (f.getName().endsWith(".png") || f.getName().endsWith(".jpg")));
+		if (files == null || files.length == 0)
+			throw new IOException("No images found in: " + BenchmarkImages.getDirectory());
+		Arrays.sort(files);
+		for (var file : files) {
+			check.checkImage(file);
+		}
+
+		for (var seed = 0; seed < synthetic; seed++) {
+			check.checkSkeletonization("strokes-" + seed, createStrokes(seed, 400));
+			check.checkDotConnector("dashes-" + seed, createDashes(seed, 400));
+		}
+
+		System.err.printf("Checked: %d, differences: %d%n", check.checked, check.failed);
+		if (check.failed > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * thins a thresholded example image using both implementations, and then connects dots in the thinned image,
+	 * as done in the capture pipeline
+	 */
+	private void checkImage(File file) throws IOException {
+		var binary = BenchmarkImages.loadBinary(file.getName());
+		var thinned = checkSkeletonization(file.getName(), binary);
+		checkDotConnector(file.getName(), thinned);
+	}
+
+	/**
+	 * @return the raster thinned by the current implementation
+	 */
+	private BitRaster checkSkeletonization(String name, BitRaster binary) {
+		var matrix = BenchmarkImages.toMatrix(binary);
+		LegacySkeletonization.apply(matrix);
+		var current = binary.copy();
+		Skeletonization.apply(current);
+		report("thinning", name, same(current, matrix));
+		return current;
+	}
+
+	private void checkDotConnector(String name, BitRaster binary) {
+		var legacy = binary.copy();
+		var legacyChains = new LegacyDotConnector(legacy).connectDots();
+		var current = binary.copy();
+		var currentChains = new DotConnector(current).connectDots();
+		report("dots", name, legacyChains == currentChains && Arrays.equals(legacy.getWords(), current.getWords()));
+	}
+
+	private void report(String stage, String name, boolean same) {
+		checked++;
+		if (!same) {
+			failed++;
+			System.err.println("Differs: " + stage + " " + name);
+		}
+	}
+
+	private static boolean same(BitRaster raster, int[][] matrix) {
+		for (var y = 0; y < raster.getHeight(); y++) {
+			for (var x = 0; x < raster.getWidth(); x++) {
+				if (raster.get(x, y) != (matrix[y][x] == 1))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * thick straight strokes and filled disks, to exercise thinning
+	 */
+	private static BitRaster createStrokes(long seed, int size) {
+		var random = new Random(seed);
+		var raster = new BitRaster(size, size);
+		for (var i = 0; i < size / 20; i++) {
+			var x0 = random.nextInt(size);
+			var y0 = random.nextInt(size);
+			var x1 = random.nextInt(size);
+			var y1 = random.nextInt(size);
+			var radius = 1 + random.nextInt(4);
+			var steps = Math.max(Math.abs(x1 - x0), Math.abs(y1 - y0));
+			for (var s = 0; s <= steps; s++) {
+				var x = x0 + (steps == 0 ? 0 : (x1 - x0) * s / steps);
+				var y = y0 + (steps == 0 ? 0 : (y1 - y0) * s / steps);
+				fillDisk(raster, x, y, (i % 5 == 0 && s == steps ? 3 * radius : radius));
+			}
+		}
+		return raster;
+	}
+
+	/**
+	 * dashed lines of single pixels in random directions, plus scattered noise pixels, to exercise dot chaining
+	 */
+	private static BitRaster createDashes(long seed, int size) {
+		var random = new Random(seed);
+		var raster = new BitRaster(size, size);
+		for (var line = 0; line < size / 4; line++) {
+			var x0 = random.nextInt(size);
+			var y0 = random.nextInt(size);
+			var angle = 2 * Math.PI * random.nextDouble();
+			var step = 3 + random.nextInt(5);
+			for (var i = 0; i < 40; i++) {
+				var x = (int) (x0 + Math.cos(angle) * i * step);
+				var y = (int) (y0 + Math.sin(angle) * i * step);
+				if (x > 0 && y > 0 && x < size - 1 && y < size - 1)
+					raster.set(x, y);
+			}
+		}
+		for (var i = 0; i < size * size / 200; i++) {
+			raster.set(1 + random.nextInt(size - 2), 1 + random.nextInt(size - 2));
+		}
+		return raster;
+	}
+
+	private static void fillDisk(BitRaster raster, int cx, int cy, int radius) {
+		for (var y = cy - radius; y <= cy + radius; y++) {
+			for (var x = cx - radius; x <= cx + radius; x++) {
+				if ((x - cx) * (x - cx) + (y - cy) * (y - cy) <= radius * radius && raster.contains(x, y))
+					raster.set(x, y);
+			}
+		}
+	}
+}
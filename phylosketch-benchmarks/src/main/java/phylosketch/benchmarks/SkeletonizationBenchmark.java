@@ -0,0 +1,76 @@
+/*
+ * SkeletonizationBenchmark.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package phylosketch.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import phylosketch.capturepane.capture.BitRaster;
+import phylosketch.capturepane.capture.Skeletonization;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compares the table-driven work-list thinning with the original full-scan implementation
+ * Daniel Huson, 10.2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SkeletonizationBenchmark {
+	@Param({"small-tree.png", "mammals.png", "dog-bones.png", "circular.png", "salamanders.jpg"})
+	public String image;
+
+	private BitRaster binary;
+	private int[][] matrix;
+
+	private BitRaster work;
+	private int[][] legacyWork;
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		binary = BenchmarkImages.loadBinary(image);
+		matrix = BenchmarkImages.toMatrix(binary);
+	}
+
+	@Setup(Level.Invocation)
+	public void copy() {
+		work = binary.copy();
+		legacyWork = new int[matrix.length][];
+		for (var y = 0; y < matrix.length; y++) {
+			legacyWork[y] = matrix[y].clone();
+		}
+	}
+
+	@Benchmark
+	public BitRaster current() {
+		Skeletonization.apply(work);
+		return work;
+	}
+
+	@Benchmark
+	public int[][] legacy() {
+		LegacySkeletonization.apply(legacyWork);
+		return legacyWork;
+	}
+}
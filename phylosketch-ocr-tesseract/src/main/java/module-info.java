@@ -9,10 +9,11 @@
 module phylosketch.ocr.tesseract {
 	requires javafx.graphics;
 	requires phylosketch.ocr;
+	requires java.desktop;            // ImageIO, for reading images in OCRTest
 
 	requires org.bytedeco.tesseract;  // TessBaseAPI, RIL_WORD, tesseract globals
-	requires org.bytedeco.leptonica;  // PIX, pixReadMem, pixGetWidth/Height
-	requires org.bytedeco.javacpp;    // BytePointer, IntPointer
+	requires org.bytedeco.leptonica;  // PIX, pixReadMem, pixGetWidth/Height, for the PNG fallback
+	requires org.bytedeco.javacpp;    // BytePointer, IntPointer, Pointer
 
 	opens tessdata;                   // bundled *.traineddata + organism_names.txt
 
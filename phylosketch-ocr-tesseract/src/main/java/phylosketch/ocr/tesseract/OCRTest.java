@@ -19,54 +19,38 @@
 
 package phylosketch.ocr.tesseract;
 
-import javafx.application.Platform;
-import javafx.scene.image.Image;
 import phylosketch.ocr.OCRService;
+import phylosketch.ocr.utils.ImageIORasters;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.util.concurrent.CountDownLatch;
 
 /**
  * Manual smoke test for the desktop (Tesseract) OCR path.
  * Usage: pass an image path, or place "example.png" in the working directory.
+ * The image is read using ImageIO, so the JavaFX toolkit is not started.
  * <p>
  * Daniel Huson, 11.2025
  */
 public class OCRTest {
 
 	public static void main(String[] args) throws Exception {
-		// Initialize the JavaFX toolkit so images can be decoded, without launching an Application.
-		try {
-			var latch = new CountDownLatch(1);
-			Platform.startup(latch::countDown);
-			latch.await();
-		} catch (IllegalStateException alreadyStarted) {
-			// toolkit is already running
-		}
-
 		var imageFile = new File(args.length > 0 ? args[0] : "example.png");
 		if (!imageFile.exists()) {
 			System.err.println("Could not find " + imageFile);
-			Platform.exit();
 			return;
 		}
 
-		final Image image;
-		try (var in = new FileInputStream(imageFile)) {
-			image = new Image(in);
-		}
+		var raster = ImageIORasters.read(imageFile.toPath());
 
 		var ocr = new OCRService();
 		System.err.println("Provider: " + ocr.providerName());
 
-		var words = ocr.getWords(image);
+		var words = ocr.getWords(raster);
 		System.err.println("=== WORDS FOUND (" + words.size() + ") ===");
 		for (var w : words) {
 			System.err.println(w);
 		}
 
 		ocr.shutdown();
-		Platform.exit();
 	}
 }
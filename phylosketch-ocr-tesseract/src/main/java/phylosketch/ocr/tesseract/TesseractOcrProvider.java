@@ -20,17 +20,25 @@
 package phylosketch.ocr.tesseract;
 
 import javafx.geometry.Rectangle2D;
-import javafx.scene.image.Image;
 import org.bytedeco.javacpp.BytePointer;
 import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.tesseract.CANCEL_FUNC;
+import org.bytedeco.tesseract.ETEXT_DESC;
 import org.bytedeco.tesseract.TessBaseAPI;
+import phylosketch.ocr.ArgbRaster;
 import phylosketch.ocr.OcrProvider;
 import phylosketch.ocr.OcrWord;
+import phylosketch.ocr.utils.FXRasters;
 import phylosketch.ocr.utils.PngEncoderFX;
+import phylosketch.ocr.utils.TiledOcr;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.*;
 
 import static org.bytedeco.leptonica.global.leptonica.*;
 import static org.bytedeco.tesseract.global.tesseract.RIL_WORD;
@@ -40,15 +48,29 @@ import static org.bytedeco.tesseract.global.tesseract.RIL_WORD;
  * JavaCPP loads its native libraries by extracting them at runtime, which neither GraalVM
  * native-image nor iOS allow, so this artifact must be kept off the iOS classpath.
  * <p>
- * One {@link TessBaseAPI} is created lazily and reused. Tesseract is not thread-safe, so all
- * access is serialized here (and again in {@code OCRService}).
+ * Tesseract is not thread-safe, so each recognition uses its own {@link TessBaseAPI} instance,
+ * taken from a pool of instances that are created on demand and reused. All recognitions, of
+ * whole images and of tiles, run on a thread pool owned by the provider, so that concurrent
+ * callers are served in parallel, while the configured thread count bounds the number of
+ * recognitions running at once, and of instances, across all callers. Each instance keeps the
+ * direct buffer through which it receives gray pixels, grown to the largest image or tile seen.
+ * Recognition stops early when the calling thread is interrupted, e.g. because a capture was canceled.
  * <p>
  * Daniel Huson, 11.2025
  */
 public class TesseractOcrProvider implements OcrProvider {
-	private TessBaseAPI api;
 	private Boolean available; // cached result of the first availability probe
 
+	private final List<Instance> pooled = new ArrayList<>(); // all instances created for the pool
+	private final BlockingQueue<Instance> idle = new LinkedBlockingQueue<>();
+	private ThreadPoolExecutor executor; // runs all recognitions, created on first use and resized when the thread count changes, guarded by pooled
+
+	private static final String LANGUAGE = "eng";
+	private static final String USER_WORDS = "organism_names.txt";
+
+	private volatile int tileSize;
+	private volatile int threads = 1;
+
 	@Override
 	public int priority() {
 		return 0;
@@ -59,11 +81,22 @@ public class TesseractOcrProvider implements OcrProvider {
 		return "Tesseract";
 	}
 
+	@Override
+	public String settings() {
+		return settings(threads > 1 ? tileSize : 0);
+	}
+
+	@Override
+	public String settings(int tileSize) {
+		// tiling can change which words are found near the seams
+		return "lang=" + LANGUAGE + ";user_words=" + USER_WORDS + (tileSize > 0 ? ";tile=" + tileSize : "");
+	}
+
 	@Override
 	public synchronized boolean isAvailable() {
 		if (available == null) {
 			try {
-				ensureApi();
+				idle.add(createPooledApi());
 				available = true;
 			} catch (Throwable t) {
 				available = false;
@@ -73,81 +106,290 @@ public class TesseractOcrProvider implements OcrProvider {
 	}
 
 	@Override
-	public synchronized List<OcrWord> getWords(Image image) throws IOException {
-		ensureApi();
+	public boolean supportsTiling() {
+		return true;
+	}
 
-		// Encode the JavaFX image to PNG in memory and let Leptonica read it directly,
-		// avoiding the temp-file round trip the original used.
-		var bytes = new PngEncoderFX(image, true, PngEncoderFX.FILTER_NONE, 9).pngEncode();
+	@Override
+	public void setTileSize(int tileSize) {
+		this.tileSize = Math.max(0, tileSize);
+	}
 
-		var words = new ArrayList<OcrWord>();
+	@Override
+	public void setThreads(int threads) {
+		threads = Math.max(1, threads);
+		synchronized (pooled) {
+			this.threads = threads;
+			// resized in place, so that callers that already hold the executor can keep submitting to it.
+			// Threads beyond the new count end when they become idle
+			if (executor != null) {
+				if (threads > executor.getMaximumPoolSize()) {
+					executor.setMaximumPoolSize(threads);
+					executor.setCorePoolSize(threads);
+				} else {
+					executor.setCorePoolSize(threads);
+					executor.setMaximumPoolSize(threads);
+				}
+			}
+			// end idle instances beyond the new count, instances in use are ended when released
+			while (pooled.size() > threads) {
+				var instance = idle.poll();
+				if (instance == null)
+					break;
+				pooled.remove(instance);
+				end(instance);
+			}
+		}
+	}
+
+	/**
+	 * Recognize words in the given image. May be called concurrently, each call waits for its
+	 * image, or tiles, to be recognized on the provider's thread pool.
+	 */
+	@Override
+	public List<OcrWord> getWords(ArgbRaster raster) throws IOException {
+		return getWords(raster, threads > 1 ? tileSize : 0);
+	}
+
+	@Override
+	public List<OcrWord> getWords(ArgbRaster raster, int tileSize) throws IOException {
+		return TiledOcr.getWords(raster, tileSize, executor(), this::getWordsPooled);
+	}
+
+	/**
+	 * the executor that runs all recognitions, with one thread per configured thread
+	 */
+	private ExecutorService executor() {
+		synchronized (pooled) {
+			if (executor == null) {
+				executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+					var thread = new Thread(r, "OCR");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+			return executor;
+		}
+	}
+
+	/**
+	 * recognize an image or tile using an instance from the pool, creating a new one, if none is idle
+	 */
+	private List<OcrWord> getWordsPooled(ArgbRaster raster) throws IOException {
+		var instance = idle.poll();
+		if (instance == null)
+			instance = createPooledApi();
+		try {
+			return getWords(instance, raster);
+		} finally {
+			release(instance);
+		}
+	}
+
+	/**
+	 * returns an instance to the pool, or ends it, if the pool holds more instances than threads
+	 */
+	private void release(Instance instance) {
+		synchronized (pooled) {
+			if (!pooled.contains(instance))
+				return; // already ended by shutdown
+			if (pooled.size() <= threads) {
+				idle.add(instance);
+				return;
+			}
+			pooled.remove(instance);
+		}
+		end(instance);
+	}
+
+	private static List<OcrWord> getWords(Instance instance, ArgbRaster raster) throws IOException {
+		if (raster.getWidth() == 0 || raster.getHeight() == 0)
+			return new ArrayList<>();
+
+		var api = instance.api;
+		if (setGrayImage(instance, raster))
+			return recognize(api);
+
+		// fallback: encode the image to PNG in memory and let Leptonica read it directly
+		var bytes = new PngEncoderFX(FXRasters.toImage(raster), true, PngEncoderFX.FILTER_NONE, 9).pngEncode();
 		try (var data = new BytePointer(bytes); var pix = pixReadMem(data, bytes.length)) {
 			if (pix == null || pixGetWidth(pix) == 0 || pixGetHeight(pix) == 0)
 				throw new IOException("Invalid image");
-
 			api.SetImage(pix);
-			if (api.Recognize(null) != 0)
+			return recognize(api);
+		}
+	}
+
+	/**
+	 * hand the 8-bit gray pixels directly to Tesseract, which copies them
+	 *
+	 * @return true, if Tesseract accepted the image
+	 */
+	private static boolean setGrayImage(Instance instance, ArgbRaster raster) {
+		var width = raster.getWidth();
+		var height = raster.getHeight();
+		try {
+			instance.api.SetImage(toGrayBuffer(raster, instance.grayBuffer(width * height)), width, height, 1, width);
+			var input = instance.api.GetInputImage();
+			return input != null && !input.isNull();
+		} catch (RuntimeException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Run recognition on the image set on the instance. Tesseract regularly calls the cancel function of the monitor,
+	 * so an interrupt of the calling thread stops the native recognition, rather than letting it run to completion.
+	 *
+	 * @throws InterruptedIOException if the calling thread was interrupted
+	 */
+	private static List<OcrWord> recognize(TessBaseAPI api) throws IOException {
+		var caller = Thread.currentThread();
+		try (var cancel = new CANCEL_FUNC() {
+			@Override
+			public boolean call(Pointer cancelThis, int words) {
+				return caller.isInterrupted();
+			}
+		}; var monitor = new ETEXT_DESC()) {
+			monitor.cancel(cancel);
+			var status = api.Recognize(monitor);
+			if (caller.isInterrupted())
+				throw new InterruptedIOException("OCR canceled");
+			if (status != 0)
 				throw new IOException("Recognition failed");
+		}
 
-			try (var ri = api.GetIterator()) {
-				if (ri != null) {
-					do {
-						try (IntPointer left = new IntPointer(1);
-							 IntPointer top = new IntPointer(1);
-							 IntPointer right = new IntPointer(1);
-							 IntPointer bottom = new IntPointer(1)) {
-
-							ri.BoundingBox(RIL_WORD, left, top, right, bottom);
-
-							var word = ri.GetUTF8Text(RIL_WORD);
-							if (word != null) {
-								var text = word.getString();
-								word.deallocate(); // free the native string Tesseract allocated
-								var confidence = ri.Confidence(RIL_WORD);
-								words.add(new OcrWord(text, confidence, new Rectangle2D(
-										Math.min(left.get(), right.get()),
-										Math.min(top.get(), bottom.get()),
-										Math.abs(right.get() - left.get()),
-										Math.abs(bottom.get() - top.get()))));
-							}
+		var words = new ArrayList<OcrWord>();
+		try (var ri = api.GetIterator()) {
+			if (ri != null) {
+				do {
+					try (IntPointer left = new IntPointer(1);
+						 IntPointer top = new IntPointer(1);
+						 IntPointer right = new IntPointer(1);
+						 IntPointer bottom = new IntPointer(1)) {
+
+						ri.BoundingBox(RIL_WORD, left, top, right, bottom);
+
+						var word = ri.GetUTF8Text(RIL_WORD);
+						if (word != null) {
+							var text = word.getString();
+							word.deallocate(); // free the native string Tesseract allocated
+							var confidence = ri.Confidence(RIL_WORD);
+							words.add(new OcrWord(text, confidence, new Rectangle2D(
+									Math.min(left.get(), right.get()),
+									Math.min(top.get(), bottom.get()),
+									Math.abs(right.get() - left.get()),
+									Math.abs(bottom.get() - top.get()))));
 						}
-					} while (ri.Next(RIL_WORD));
-				}
+					}
+				} while (ri.Next(RIL_WORD));
 			}
 		}
 		return words;
 	}
 
+	/**
+	 * Convert an image to 8-bit gray pixels in a direct buffer, row by row without padding.
+	 * As Tesseract does for images with alpha, pixels are first blended onto white, then converted
+	 * using Leptonica's luminance weights.
+	 *
+	 * @param gray the buffer to fill, with capacity at least the number of pixels
+	 * @return the buffer, flipped for reading
+	 */
+	private static ByteBuffer toGrayBuffer(ArgbRaster raster, ByteBuffer gray) {
+		var pixels = raster.getPixels();
+		var size = raster.getWidth() * raster.getHeight();
+
+		gray.clear();
+		for (var i = 0; i < size; i++) {
+			var argb = pixels[i];
+			var a = argb >>> 24;
+			var r = (argb >> 16) & 0xFF;
+			var g = (argb >> 8) & 0xFF;
+			var b = argb & 0xFF;
+			if (a != 255) {
+				r = (r * a + 255 * (255 - a)) / 255;
+				g = (g * a + 255 * (255 - a)) / 255;
+				b = (b * a + 255 * (255 - a)) / 255;
+			}
+			gray.put((byte) Math.min(255, (int) (0.3 * r + 0.5 * g + 0.2 * b + 0.5)));
+		}
+		return gray.flip();
+	}
+
 	@Override
 	public synchronized void shutdown() {
-		if (api != null) {
-			api.End();
-			api.close();
-			api = null;
+		synchronized (pooled) {
+			if (executor != null) {
+				executor.shutdownNow();
+				try {
+					// instances must not be ended while still in use. Interrupted recognitions stop quickly
+					executor.awaitTermination(10, TimeUnit.SECONDS);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				executor = null;
+			}
+			for (var instance : pooled) {
+				end(instance);
+			}
+			pooled.clear();
+			idle.clear();
 		}
 		available = null;
 	}
 
-	private void ensureApi() throws IOException {
-		if (api != null)
-			return;
+	private static void end(Instance instance) {
+		instance.api.End();
+		instance.api.close();
+	}
 
+	private Instance createPooledApi() throws IOException {
+		var instance = new Instance(createApi());
+		synchronized (pooled) {
+			pooled.add(instance);
+		}
+		return instance;
+	}
+
+	private static TessBaseAPI createApi() throws IOException {
 		var tessDataDir = TessdataManager.getTessdataDir();
 		System.setProperty("TESSDATA_PREFIX", tessDataDir.toString());
 
 		var a = new TessBaseAPI();
-		if (a.Init(tessDataDir.getAbsolutePath(), "eng") != 0) {
+		if (a.Init(tessDataDir.getAbsolutePath(), LANGUAGE) != 0) {
 			a.close();
 			throw new IOException("Could not initialize Tesseract.");
 		}
 
-		a.SetVariable("user_words_suffix", "organism_names.txt");
+		a.SetVariable("user_words_suffix", USER_WORDS);
 		a.SetVariable("load_system_dawg", "F"); // disable the default system dictionary
 		a.SetVariable("load_freq_dawg", "F");   // disable the frequency dictionary
-		a.SetVariable("user_words", "tessdata/organism_names.txt");
-		a.SetVariable("user_words_file", "tessdata/organism_names.txt");
+		a.SetVariable("user_words", "tessdata/" + USER_WORDS);
+		a.SetVariable("user_words_file", "tessdata/" + USER_WORDS);
 		// Note: a char whitelist prevents words in quotes, so it is intentionally left unset.
 
-		api = a;
+		return a;
+	}
+
+	/**
+	 * a Tesseract instance of the pool, with the direct buffer used to pass it gray pixels
+	 */
+	private static final class Instance {
+		private final TessBaseAPI api;
+		private ByteBuffer gray;
+
+		private Instance(TessBaseAPI api) {
+			this.api = api;
+		}
+
+		/**
+		 * the buffer of this instance, replaced by a larger one, if it cannot hold the given number of pixels
+		 */
+		private ByteBuffer grayBuffer(int size) {
+			if (gray == null || gray.capacity() < size)
+				gray = ByteBuffer.allocateDirect(size);
+			return gray;
+		}
 	}
 }
@@ -9,6 +9,7 @@
  */
 module phylosketch.ocr {
 	requires javafx.graphics;          // Image, Rectangle2D, Platform; also covers PngEncoderFX
+	requires static java.desktop;      // ImageIORasters only, not available on iOS
 
 	exports phylosketch.ocr;
 	exports phylosketch.ocr.utils;
@@ -0,0 +1,121 @@
+/*
+ *  ArgbRaster.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package phylosketch.ocr;
+
+import java.util.Arrays;
+
+/**
+ * A toolkit-independent image: width, height and the pixels as non-premultiplied ARGB values,
+ * row by row without padding.
+ * <p>
+ * The pixel array is exposed directly, so that image processing code can run in plain loops
+ * over it, without per-pixel calls and without the JavaFX toolkit. Use
+ * {@link phylosketch.ocr.utils.FXRasters} and {@link phylosketch.ocr.utils.ImageIORasters} to
+ * convert from and to JavaFX images and {@code javax.imageio} images.
+ * <p>
+ * Daniel Huson, 10.2026
+ */
+public final class ArgbRaster {
+	private final int width;
+	private final int height;
+	private final int[] pixels;
+
+	/**
+	 * create a raster whose pixels are all transparent
+	 */
+	public ArgbRaster(int width, int height) {
+		this(width, height, new int[checkSize(width, height)]);
+	}
+
+	/**
+	 * wrap the given pixels, without copying them
+	 *
+	 * @param pixels ARGB values, row by row, at least width*height
+	 */
+	public ArgbRaster(int width, int height, int[] pixels) {
+		if (pixels.length < checkSize(width, height))
+			throw new IllegalArgumentException("Too few pixels for %dx%d raster: %d".formatted(width, height, pixels.length));
+		this.width = width;
+		this.height = height;
+		this.pixels = pixels;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * the pixels, as non-premultiplied ARGB values, pixel (x,y) is at index y*width+x
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	public int index(int x, int y) {
+		return y * width + x;
+	}
+
+	public int getArgb(int x, int y) {
+		return pixels[y * width + x];
+	}
+
+	public void setArgb(int x, int y, int argb) {
+		pixels[y * width + x] = argb;
+	}
+
+	/**
+	 * copy a rectangle of this raster, clipped to the bounds of the raster
+	 */
+	public ArgbRaster crop(int x, int y, int width, int height) {
+		x = Math.max(0, x);
+		y = Math.max(0, y);
+		width = Math.max(0, Math.min(width, this.width - x));
+		height = Math.max(0, Math.min(height, this.height - y));
+		var result = new ArgbRaster(width, height);
+		for (var row = 0; row < height; row++) {
+			System.arraycopy(pixels, index(x, y + row), result.pixels, row * width, width);
+		}
+		return result;
+	}
+
+	/**
+	 * copy this raster
+	 */
+	public ArgbRaster copy() {
+		return new ArgbRaster(width, height, Arrays.copyOf(pixels, width * height));
+	}
+
+	/**
+	 * memory used by the pixel array, in bytes
+	 */
+	public long memoryBytes() {
+		return 4L * pixels.length;
+	}
+
+	private static int checkSize(int width, int height) {
+		if (width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Invalid raster size: %dx%d".formatted(width, height));
+		return width * height;
+	}
+}
@@ -20,8 +20,11 @@
 package phylosketch.ocr;
 
 import javafx.scene.image.Image;
+import phylosketch.ocr.utils.FXRasters;
+import phylosketch.ocr.utils.OcrCache;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
@@ -30,27 +33,65 @@ import java.util.ServiceLoader;
 /**
  * Front door for OCR. Locates the best available {@link OcrProvider} and delegates to it.
  * <p>
- * OCR back-ends are not thread-safe (Tesseract in particular keeps mutable native state), so
- * this class serializes access. Call it off the JavaFX Application Thread.
+ * Recognition may be requested concurrently from several threads. Providers are responsible for
+ * running their native back-ends safely, the Tesseract provider, for example, uses one native
+ * instance per running recognition, and its thread count bounds how many run at once. Only the
+ * configuration of this class is serialized. Call it off the JavaFX Application Thread.
+ * <p>
+ * Results are cached by image content, provider and provider settings (see {@link OcrCache}), in
+ * memory and, if a cache directory is set, on disk, so that recognizing the same image again is cheap.
  *
  * Daniel Huson, 11.2025
  */
 public class OCRService {
+	public static final int DEFAULT_TILE_SIZE = 2048;
+
 	private OcrProvider provider;
 	private boolean resolved;
 
+	private int tileSize = DEFAULT_TILE_SIZE;
+	private int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	private final OcrCache cache = new OcrCache();
+
+	/**
+	 * Get the words in a JavaFX image.
+	 *
+	 * @param image the image, must be loaded
+	 * @return the words, in image pixel coordinates (origin top-left)
+	 * @throws IOException on recognition failure, or if no provider is available here
+	 */
+	public List<OcrWord> getWords(Image image) throws IOException {
+		return getWords(FXRasters.fromImage(image));
+	}
+
 	/**
 	 * Get the words in an image.
 	 *
-	 * @param image the image
+	 * @param raster the pixels of the image
 	 * @return the words, in image pixel coordinates (origin top-left)
 	 * @throws IOException on recognition failure, or if no provider is available here
 	 */
-	public synchronized List<OcrWord> getWords(Image image) throws IOException {
-		var p = provider();
-		if (p == null)
-			throw new IOException("No OCR provider is available on this platform");
-		return p.getWords(image);
+	public List<OcrWord> getWords(ArgbRaster raster) throws IOException {
+		// one snapshot of the settings, used both to key the result and to recognize
+		OcrProvider p;
+		int tiles;
+		String recognizer;
+		synchronized (this) {
+			p = provider();
+			if (p == null)
+				throw new IOException("No OCR provider is available on this platform");
+			tiles = effectiveTileSize(p);
+			recognizer = describe(p, tiles);
+		}
+
+		var key = OcrCache.computeKey(raster, recognizer);
+		var words = cache.get(key);
+		if (words == null) {
+			words = p.getWords(raster, tiles);
+			cache.put(key, words);
+		}
+		return words;
 	}
 
 	/**
@@ -68,6 +109,90 @@ public class OCRService {
 		return p == null ? "none" : p.name();
 	}
 
+	/**
+	 * Describes the active provider and all of its settings that affect the recognized words,
+	 * so that results obtained elsewhere can be keyed by it.
+	 */
+	public synchronized String recognizer() {
+		var p = provider();
+		return p == null ? "none" : describe(p, effectiveTileSize(p));
+	}
+
+	private static String describe(OcrProvider p, int tileSize) {
+		return p.name() + "\n" + p.settings(tileSize);
+	}
+
+	/**
+	 * the tile size used by the provider, 0, if it does not tile or runs single-threaded
+	 */
+	private int effectiveTileSize(OcrProvider p) {
+		return (p.supportsTiling() && threads > 1 ? tileSize : 0);
+	}
+
+	/**
+	 * Does the active provider support tiled, multi-threaded recognition?
+	 */
+	public synchronized boolean supportsTiling() {
+		var p = provider();
+		return p != null && p.supportsTiling();
+	}
+
+	public synchronized int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * Set the tile size used by providers that support tiling, 0 disables tiling.
+	 */
+	public synchronized void setTileSize(int tileSize) {
+		this.tileSize = Math.max(0, tileSize);
+		if (provider != null)
+			provider.setTileSize(this.tileSize);
+	}
+
+	public synchronized int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Set the number of threads used for recognition, which bounds the number of images, or tiles,
+	 * that are recognized at once, across all callers.
+	 */
+	public synchronized void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+		if (provider != null)
+			provider.setThreads(this.threads);
+	}
+
+	/**
+	 * Set the directory in which recognized words are cached across sessions, null disables the disk cache.
+	 */
+	public synchronized void setCacheDirectory(Path directory) {
+		cache.setDirectory(directory);
+	}
+
+	public synchronized Path getCacheDirectory() {
+		return cache.getDirectory();
+	}
+
+	/**
+	 * Set the number of results cached in memory, 0 disables the memory cache.
+	 */
+	public synchronized void setCacheSize(int entries) {
+		cache.setMemoryEntries(entries);
+	}
+
+	public synchronized int getCacheSize() {
+		return cache.getMemoryEntries();
+	}
+
+	/**
+	 * Remove all cached results, in memory and on disk.
+	 */
+	public synchronized void clearCache() {
+		cache.clear();
+	}
+
 	/**
 	 * Release native resources held by the active provider.
 	 */
@@ -83,6 +208,10 @@ public class OCRService {
 		if (!resolved) {
 			resolved = true;
 			provider = locate();
+			if (provider != null) {
+				provider.setTileSize(tileSize);
+				provider.setThreads(threads);
+			}
 		}
 		return provider;
 	}
@@ -20,6 +20,7 @@
 package phylosketch.ocr;
 
 import javafx.scene.image.Image;
+import phylosketch.ocr.utils.FXRasters;
 
 import java.io.IOException;
 import java.util.List;
@@ -45,12 +46,55 @@ public interface OcrProvider {
 	boolean isAvailable();
 
 	/**
-	 * Recognize words in the given image.
+	 * Recognize words in the given image. May be called concurrently from several threads.
 	 *
-	 * @param image the image
+	 * @param raster the pixels of the image
 	 * @return the recognized words, in image pixel coordinates (origin top-left)
 	 */
-	List<OcrWord> getWords(Image image) throws IOException;
+	List<OcrWord> getWords(ArgbRaster raster) throws IOException;
+
+	/**
+	 * Recognize words in the given image, using the given tile size instead of the one set, so that
+	 * the caller knows the settings used, see {@link #settings(int)}. By default, ignores the tile size.
+	 *
+	 * @param raster   the pixels of the image
+	 * @param tileSize the tile size, 0 for no tiling
+	 * @return the recognized words, in image pixel coordinates (origin top-left)
+	 */
+	default List<OcrWord> getWords(ArgbRaster raster, int tileSize) throws IOException {
+		return getWords(raster);
+	}
+
+	/**
+	 * Recognize words in the given JavaFX image. By default, copies the pixels to a raster.
+	 *
+	 * @param image the image, must be loaded
+	 * @return the recognized words, in image pixel coordinates (origin top-left)
+	 */
+	default List<OcrWord> getWords(Image image) throws IOException {
+		return getWords(FXRasters.fromImage(image));
+	}
+
+	/**
+	 * Does this provider support tiled recognition? If so, {@link #setTileSize(int)} and
+	 * {@link #setThreads(int)} are honored, otherwise they are ignored.
+	 */
+	default boolean supportsTiling() {
+		return false;
+	}
+
+	/**
+	 * Set the tile size: images larger than this in either dimension are split into overlapping
+	 * tiles that are recognized in parallel. A value of 0 disables tiling.
+	 */
+	default void setTileSize(int tileSize) {
+	}
+
+	/**
+	 * Set the number of threads used to recognize images and tiles, across all concurrent calls.
+	 */
+	default void setThreads(int threads) {
+	}
 
 	/**
 	 * Release any native resources. Safe to call more than once.
@@ -66,6 +110,23 @@ public interface OcrProvider {
 		return 0;
 	}
 
+	/**
+	 * Language and any other settings that affect the recognized words. Used, together with
+	 * {@link #name()}, to key cached results, so a provider must change this when its
+	 * configuration changes.
+	 */
+	default String settings() {
+		return "";
+	}
+
+	/**
+	 * The settings that affect the recognized words, when recognizing with the given tile size.
+	 * By default, the same as {@link #settings()}.
+	 */
+	default String settings(int tileSize) {
+		return settings();
+	}
+
 	/**
 	 * Short human-readable name, for logging / about boxes.
 	 */
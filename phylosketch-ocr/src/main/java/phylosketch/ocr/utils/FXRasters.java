@@ -0,0 +1,79 @@
+/*
+ *  FXRasters.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package phylosketch.ocr.utils;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import phylosketch.ocr.ArgbRaster;
+
+/**
+ * Conversion between JavaFX images and {@link ArgbRaster}s.
+ * <p>
+ * Pixels are transferred with a single bulk read or write. Neither direction requires the
+ * JavaFX toolkit to be running.
+ * <p>
+ * Daniel Huson, 10.2026
+ */
+public class FXRasters {
+	/**
+	 * copy the pixels of a JavaFX image into a raster
+	 *
+	 * @param image the image, must be loaded
+	 * @return the raster
+	 */
+	public static ArgbRaster fromImage(Image image) {
+		return fromImage(image, 0, 0, (int) image.getWidth(), (int) image.getHeight());
+	}
+
+	/**
+	 * copy a rectangle of a JavaFX image into a raster. The rectangle is clipped to the bounds of the image
+	 *
+	 * @param image the image, must be loaded
+	 * @return the raster
+	 */
+	public static ArgbRaster fromImage(Image image, int x, int y, int width, int height) {
+		var reader = image.getPixelReader();
+		if (reader == null)
+			throw new IllegalArgumentException("Image has no pixel reader.");
+		x = Math.max(0, x);
+		y = Math.max(0, y);
+		width = Math.max(0, Math.min(width, (int) image.getWidth() - x));
+		height = Math.max(0, Math.min(height, (int) image.getHeight() - y));
+
+		var raster = new ArgbRaster(width, height);
+		if (width > 0 && height > 0)
+			reader.getPixels(x, y, width, height, PixelFormat.getIntArgbInstance(), raster.getPixels(), 0, width);
+		return raster;
+	}
+
+	/**
+	 * copy a raster into a new JavaFX image
+	 *
+	 * @param raster the raster
+	 * @return the image
+	 */
+	public static WritableImage toImage(ArgbRaster raster) {
+		var image = new WritableImage(Math.max(1, raster.getWidth()), Math.max(1, raster.getHeight()));
+		if (raster.getWidth() > 0 && raster.getHeight() > 0)
+			image.getPixelWriter().setPixels(0, 0, raster.getWidth(), raster.getHeight(), PixelFormat.getIntArgbInstance(), raster.getPixels(), 0, raster.getWidth());
+		return image;
+	}
+}
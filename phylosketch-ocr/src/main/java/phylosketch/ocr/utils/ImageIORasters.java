@@ -0,0 +1,116 @@
+/*
+ *  ImageIORasters.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package phylosketch.ocr.utils;
+
+import phylosketch.ocr.ArgbRaster;
+
+import javax.imageio.ImageIO;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Conversion between {@code javax.imageio} images and {@link ArgbRaster}s, for reading
+ * images in processes that do not use JavaFX, such as batch runs and benchmarks.
+ * <p>
+ * Requires the {@code java.desktop} module, which this module only requires statically, as it
+ * is not available on all platforms.
+ * <p>
+ * Daniel Huson, 10.2026
+ */
+public class ImageIORasters {
+	/**
+	 * read an image file into a raster
+	 *
+	 * @param file the file, in any format supported by ImageIO
+	 * @return the raster
+	 * @throws IOException if the file can't be read or has an unsupported format
+	 */
+	public static ArgbRaster read(Path file) throws IOException {
+		var image = ImageIO.read(file.toFile());
+		if (image == null)
+			throw new IOException("Unsupported image format: " + file);
+		return fromBufferedImage(image);
+	}
+
+	/**
+	 * copy the pixels of a buffered image into a raster
+	 */
+	public static ArgbRaster fromBufferedImage(BufferedImage image) {
+		var width = image.getWidth();
+		var height = image.getHeight();
+		var raster = new ArgbRaster(width, height);
+		var pixels = raster.getPixels();
+
+		if ((image.getType() == BufferedImage.TYPE_INT_ARGB || image.getType() == BufferedImage.TYPE_INT_RGB)
+			&& image.getRaster().getDataBuffer() instanceof DataBufferInt dataBuffer && dataBuffer.getOffset() == 0
+			&& image.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel && sampleModel.getScanlineStride() == width
+			&& image.getRaster().getSampleModelTranslateX() == 0 && image.getRaster().getSampleModelTranslateY() == 0) {
+			// the common case of a decoded image, copy the packed pixels directly
+			System.arraycopy(dataBuffer.getData(), 0, pixels, 0, width * height);
+			if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+				for (var i = 0; i < pixels.length; i++)
+					pixels[i] |= 0xFF000000;
+			}
+		} else if (image.getColorModel().getColorSpace().getType() == ColorSpace.TYPE_GRAY && image.getRaster().getNumBands() <= 2) {
+			// gray values are used as they are, as JavaFX does, rather than converted from linear gray to sRGB
+			copyGray(image, pixels);
+		} else if (width > 0 && height > 0) {
+			image.getRGB(0, 0, width, height, pixels, 0, width);
+		}
+		return raster;
+	}
+
+	private static void copyGray(BufferedImage image, int[] pixels) {
+		var width = image.getWidth();
+		var source = image.getRaster();
+		var colorModel = image.getColorModel();
+		var grayMax = (1 << colorModel.getComponentSize(0)) - 1;
+		var hasAlpha = (source.getNumBands() == 2);
+		var alphaMax = (hasAlpha ? (1 << colorModel.getComponentSize(1)) - 1 : 1);
+
+		var gray = new int[width];
+		var alpha = new int[width];
+		for (var y = 0; y < image.getHeight(); y++) {
+			source.getSamples(0, y, width, 1, 0, gray);
+			if (hasAlpha)
+				source.getSamples(0, y, width, 1, 1, alpha);
+			var offset = y * width;
+			for (var x = 0; x < width; x++) {
+				var value = (gray[x] * 255 + grayMax / 2) / grayMax;
+				var a = (hasAlpha ? (alpha[x] * 255 + alphaMax / 2) / alphaMax : 255);
+				pixels[offset + x] = (a << 24) | (value << 16) | (value << 8) | value;
+			}
+		}
+	}
+
+	/**
+	 * copy a raster into a new buffered image of type {@link BufferedImage#TYPE_INT_ARGB}
+	 */
+	public static BufferedImage toBufferedImage(ArgbRaster raster) {
+		var image = new BufferedImage(Math.max(1, raster.getWidth()), Math.max(1, raster.getHeight()), BufferedImage.TYPE_INT_ARGB);
+		if (raster.getWidth() > 0 && raster.getHeight() > 0)
+			image.setRGB(0, 0, raster.getWidth(), raster.getHeight(), raster.getPixels(), 0, raster.getWidth());
+		return image;
+	}
+}
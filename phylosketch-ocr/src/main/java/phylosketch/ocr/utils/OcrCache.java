@@ -0,0 +1,293 @@
+/*
+ *  OcrCache.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package phylosketch.ocr.utils;
+
+import javafx.geometry.Rectangle2D;
+import phylosketch.ocr.ArgbRaster;
+import phylosketch.ocr.OcrWord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Content-addressed cache of OCR results.
+ * <p>
+ * Results are keyed by a SHA-256 hash of the pixels of the image together with a description of
+ * the recognizer (provider name, language and other settings that affect the result). Entries are
+ * kept in an in-memory LRU map and, optionally, as small text files in a directory on disk, so
+ * that re-running a capture on the same image does not repeat the recognition.
+ * <p>
+ * The disk tier is best-effort: any failure to read or write a file is treated as a miss.
+ * <p>
+ * Daniel Huson, 10.2026
+ */
+public class OcrCache {
+	public static final int DEFAULT_MEMORY_ENTRIES = 16;
+	public static final int DEFAULT_DISK_ENTRIES = 256;
+
+	private static final String SUFFIX = ".words";
+	private static final int BAND_PIXELS = 1 << 18;
+
+	private final LinkedHashMap<String, List<OcrWord>> memory = new LinkedHashMap<>(16, 0.75f, true);
+	private int memoryEntries = DEFAULT_MEMORY_ENTRIES;
+
+	private Path directory;
+	private int diskEntries = DEFAULT_DISK_ENTRIES;
+
+	/**
+	 * compute the key for an image and recognizer
+	 *
+	 * @param raster     the pixels of the image
+	 * @param recognizer description of everything else that affects the result, e.g. provider name and language
+	 * @return hex string
+	 */
+	public static String computeKey(ArgbRaster raster, String recognizer) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex); // every Java platform must support SHA-256
+		}
+		digest.update(recognizer.getBytes(StandardCharsets.UTF_8));
+
+		var width = raster.getWidth();
+		var height = raster.getHeight();
+		digest.update(ByteBuffer.allocate(8).putInt(width).putInt(height).flip());
+
+		if (width > 0 && height > 0) {
+			// little-endian ARGB values are BGRA bytes
+			var pixels = raster.getPixels();
+			var band = ByteBuffer.allocate(4 * Math.min(width * height, BAND_PIXELS)).order(ByteOrder.LITTLE_ENDIAN);
+			for (var offset = 0; offset < width * height; offset += BAND_PIXELS) {
+				var length = Math.min(BAND_PIXELS, width * height - offset);
+				band.clear();
+				band.asIntBuffer().put(pixels, offset, length);
+				band.limit(4 * length);
+				digest.update(band);
+			}
+		}
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	/**
+	 * get cached words
+	 *
+	 * @param key the key
+	 * @return the words, or null, if not cached
+	 */
+	public synchronized List<OcrWord> get(String key) {
+		var words = memory.get(key);
+		if (words == null && directory != null) {
+			words = readFile(directory.resolve(key + SUFFIX));
+			if (words != null)
+				putMemory(key, words);
+		}
+		return words;
+	}
+
+	/**
+	 * cache words
+	 *
+	 * @param key   the key
+	 * @param words the words
+	 */
+	public synchronized void put(String key, List<OcrWord> words) {
+		words = List.copyOf(words);
+		putMemory(key, words);
+		if (directory != null) {
+			writeFile(directory.resolve(key + SUFFIX), words);
+			prune();
+		}
+	}
+
+	/**
+	 * removes all entries from memory and from the cache directory, if set
+	 */
+	public synchronized void clear() {
+		memory.clear();
+		if (directory != null) {
+			for (var file : listFiles())
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException ignored) {
+				}
+		}
+	}
+
+	public synchronized int getMemoryEntries() {
+		return memoryEntries;
+	}
+
+	/**
+	 * set the maximum number of results held in memory, 0 disables the memory tier
+	 */
+	public synchronized void setMemoryEntries(int memoryEntries) {
+		this.memoryEntries = Math.max(0, memoryEntries);
+		shrinkMemory();
+	}
+
+	public synchronized Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * set the directory for the disk tier, null disables it
+	 */
+	public synchronized void setDirectory(Path directory) {
+		this.directory = directory;
+	}
+
+	public synchronized int getDiskEntries() {
+		return diskEntries;
+	}
+
+	/**
+	 * set the maximum number of results kept on disk, the least recently used are removed first
+	 */
+	public synchronized void setDiskEntries(int diskEntries) {
+		this.diskEntries = Math.max(0, diskEntries);
+	}
+
+	private void putMemory(String key, List<OcrWord> words) {
+		memory.put(key, words);
+		shrinkMemory();
+	}
+
+	private void shrinkMemory() {
+		var it = memory.entrySet().iterator();
+		while (memory.size() > memoryEntries && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	private List<Path> listFiles() {
+		try (var stream = Files.list(directory)) {
+			return stream.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList();
+		} catch (IOException ex) {
+			return List.of();
+		}
+	}
+
+	private void prune() {
+		var files = listFiles();
+		if (files.size() > diskEntries) {
+			var sorted = new ArrayList<>(files);
+			sorted.sort(Comparator.comparing(OcrCache::lastModified));
+			for (var file : sorted.subList(0, files.size() - diskEntries)) {
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException ignored) {
+				}
+			}
+		}
+	}
+
+	private static FileTime lastModified(Path file) {
+		try {
+			return Files.getLastModifiedTime(file);
+		} catch (IOException ex) {
+			return FileTime.fromMillis(0);
+		}
+	}
+
+	/**
+	 * reads words, one per line: confidence, x, y, width, height and escaped text, separated by tabs
+	 */
+	private static List<OcrWord> readFile(Path file) {
+		if (!Files.isRegularFile(file))
+			return null;
+		try {
+			var words = new ArrayList<OcrWord>();
+			for (var line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+				var tokens = line.split("\t", 6);
+				if (tokens.length != 6)
+					return null;
+				words.add(new OcrWord(unescape(tokens[5]), Float.parseFloat(tokens[0]), new Rectangle2D(Double.parseDouble(tokens[1]),
+						Double.parseDouble(tokens[2]), Double.parseDouble(tokens[3]), Double.parseDouble(tokens[4]))));
+			}
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis())); // mark as recently used
+			return List.copyOf(words);
+		} catch (IOException | RuntimeException ex) {
+			return null;
+		}
+	}
+
+	private static void writeFile(Path file, List<OcrWord> words) {
+		var lines = new ArrayList<String>(words.size());
+		for (var word : words) {
+			var box = word.boundingBox();
+			lines.add(word.confidence() + "\t" + box.getMinX() + "\t" + box.getMinY() + "\t" + box.getWidth() + "\t" + box.getHeight()
+					  + "\t" + escape(word.text()));
+		}
+		Path tmp = null;
+		try {
+			Files.createDirectories(file.getParent());
+			// write to a temporary file first, so that a concurrent reader never sees a partial file
+			tmp = Files.createTempFile(file.getParent(), "ocr", ".tmp");
+			Files.write(tmp, lines, StandardCharsets.UTF_8);
+			try {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			tmp = null;
+		} catch (IOException ignored) {
+		} finally {
+			if (tmp != null) {
+				try {
+					Files.deleteIfExists(tmp);
+				} catch (IOException ignored) {
+				}
+			}
+		}
+	}
+
+	private static String escape(String text) {
+		return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	private static String unescape(String text) {
+		var buf = new StringBuilder(text.length());
+		for (var i = 0; i < text.length(); i++) {
+			var ch = text.charAt(i);
+			if (ch == '\\' && i + 1 < text.length()) {
+				ch = text.charAt(++i);
+				buf.append(switch (ch) {
+					case 't' -> '\t';
+					case 'n' -> '\n';
+					case 'r' -> '\r';
+					default -> ch;
+				});
+			} else
+				buf.append(ch);
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ *  TiledOcr.java Copyright (C) 2025 Daniel H. Huson
+ *
+ *  (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package phylosketch.ocr.utils;
+
+import javafx.geometry.Rectangle2D;
+import phylosketch.ocr.ArgbRaster;
+import phylosketch.ocr.OcrWord;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Tiled OCR: splits an image into overlapping tiles, recognizes them in parallel and stitches
+ * the results back together. An image that fits into a single tile is also recognized on the
+ * executor, so that the executor bounds the number of recognitions running at once across all
+ * callers. If the calling thread is interrupted, the tiles that are running are interrupted and
+ * those not yet started are skipped.
+ * <p>
+ * Neighbouring tiles overlap, so a word that is cut by the seam of one tile is usually seen
+ * whole in the other. When stitching, words are considered best-first, preferring words that
+ * do not touch an inner tile edge and then higher confidence, and a word is dropped if it
+ * mostly overlaps a word already kept from another tile, or, if it was cut, lies mostly inside one. Only words that lie in the overlap of
+ * their tile with another tile can be seen twice, so only those are compared, using a grid of
+ * the kept words. Words of the same tile are never dropped in favor of each other.
+ * <p>
+ * Daniel Huson, 10.2026
+ */
+public class TiledOcr {
+	/**
+	 * words closer than this to an inner tile edge are considered to be possibly cut
+	 */
+	private static final int EDGE_MARGIN = 2;
+	/**
+	 * a word that is whole is a duplicate if its box and that of a kept word overlap by at least this fraction of their
+	 * union. A word cut by a tile edge is a duplicate if at least this fraction of the smaller box is covered
+	 */
+	private static final double DUPLICATE_OVERLAP = 0.5;
+	/**
+	 * cell size of the grid used to look up kept words when stitching
+	 */
+	private static final int CELL_SIZE = 64;
+
+	/**
+	 * Recognizes a single tile. Called concurrently from several threads, so implementations
+	 * must use a separate native instance per call or thread.
+	 */
+	public interface TileRecognizer {
+		List<OcrWord> getWords(ArgbRaster tile) throws IOException;
+	}
+
+	/**
+	 * Recognize words in an image, tile by tile.
+	 *
+	 * @param raster     the image
+	 * @param tileSize   the tile size in pixels, 0 to recognize the image as a single tile
+	 * @param executor   runs the tiles, owned by the caller, so that its threads are reused across calls
+	 * @param recognizer the recognizer
+	 * @return the words, in image pixel coordinates
+	 */
+	public static List<OcrWord> getWords(ArgbRaster raster, int tileSize, ExecutorService executor, TileRecognizer recognizer) throws IOException {
+		var width = raster.getWidth();
+		var height = raster.getHeight();
+		var tiles = computeTiles(width, height, tileSize, computeOverlap(tileSize));
+
+		var futures = new ArrayList<Future<List<OcrWord>>>();
+		try {
+			for (var tile : tiles) {
+				futures.add(executor.submit(() -> {
+					if (Thread.currentThread().isInterrupted())
+						throw new InterruptedIOException("OCR canceled");
+					if (tiles.size() == 1)
+						return recognizer.getWords(raster);
+					var x = (int) tile.getMinX();
+					var y = (int) tile.getMinY();
+					var tileRaster = raster.crop(x, y, (int) tile.getWidth(), (int) tile.getHeight());
+					var words = new ArrayList<OcrWord>();
+					for (var word : recognizer.getWords(tileRaster)) {
+						var box = word.boundingBox();
+						words.add(new OcrWord(word.text(), word.confidence(), new Rectangle2D(box.getMinX() + x, box.getMinY() + y, box.getWidth(), box.getHeight())));
+					}
+					return words;
+				}));
+			}
+			var tileWords = new ArrayList<List<OcrWord>>();
+			for (var future : futures) {
+				tileWords.add(future.get());
+			}
+			return (tiles.size() == 1 ? tileWords.get(0) : stitch(tiles, tileWords, width, height));
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("OCR canceled");
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException ioException)
+				throw ioException;
+			throw new IOException(ex.getCause());
+		} finally {
+			// after a failure or interrupt, stop the remaining tiles
+			for (var future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * The overlap between neighbouring tiles, large enough to contain a typical label.
+	 */
+	public static int computeOverlap(int tileSize) {
+		return Math.max(64, tileSize / 8);
+	}
+
+	/**
+	 * Split an image into tiles of at most the given size that overlap by the given amount.
+	 */
+	public static List<Rectangle2D> computeTiles(int width, int height, int tileSize, int overlap) {
+		var tiles = new ArrayList<Rectangle2D>();
+		if (tileSize <= 0 || (width <= tileSize && height <= tileSize)) {
+			tiles.add(new Rectangle2D(0, 0, width, height));
+			return tiles;
+		}
+		var step = Math.max(1, tileSize - overlap);
+		for (var y = 0; ; y += step) {
+			var tileHeight = Math.min(tileSize, height - y);
+			for (var x = 0; ; x += step) {
+				var tileWidth = Math.min(tileSize, width - x);
+				tiles.add(new Rectangle2D(x, y, tileWidth, tileHeight));
+				if (x + tileWidth >= width)
+					break;
+			}
+			if (y + tileHeight >= height)
+				break;
+		}
+		return tiles;
+	}
+
+	/**
+	 * Merge the words of all tiles, removing duplicates and words cut by tile seams.
+	 */
+	public static List<OcrWord> stitch(List<Rectangle2D> tiles, List<List<OcrWord>> tileWords, int width, int height) {
+		record Candidate(OcrWord word, int tile, boolean cut, int order) {
+		}
+		var candidates = new ArrayList<Candidate>();
+		for (var t = 0; t < tiles.size(); t++) {
+			var tile = tiles.get(t);
+			for (var word : tileWords.get(t)) {
+				candidates.add(new Candidate(word, t, touchesInnerEdge(word.boundingBox(), tile, width, height), candidates.size()));
+			}
+		}
+		candidates.sort(Comparator.comparing(Candidate::cut).thenComparing(c -> -c.word().confidence()).thenComparingInt(Candidate::order));
+
+		var kept = new ArrayList<Candidate>();
+		var grid = new HashMap<Long, List<Candidate>>(); // kept words that lie in an overlap, by the cells they cover
+		for (var candidate : candidates) {
+			var box = candidate.word().boundingBox();
+			if (!inOverlap(box, candidate.tile(), tiles)) {
+				kept.add(candidate);
+				continue;
+			}
+			var duplicate = false;
+			for (var cy = cell(box.getMinY()); cy <= cell(box.getMaxY()) && !duplicate; cy++) {
+				for (var cx = cell(box.getMinX()); cx <= cell(box.getMaxX()) && !duplicate; cx++) {
+					for (var other : grid.getOrDefault(key(cx, cy), List.of())) {
+						if (other.tile() != candidate.tile() && isDuplicate(box, other.word().boundingBox(), candidate.cut())) {
+							duplicate = true;
+							break;
+						}
+					}
+				}
+			}
+			if (!duplicate) {
+				kept.add(candidate);
+				for (var cy = cell(box.getMinY()); cy <= cell(box.getMaxY()); cy++) {
+					for (var cx = cell(box.getMinX()); cx <= cell(box.getMaxX()); cx++) {
+						grid.computeIfAbsent(key(cx, cy), k -> new ArrayList<>()).add(candidate);
+					}
+				}
+			}
+		}
+		// report in reading order of the tiles
+		kept.sort(Comparator.comparingInt(Candidate::order));
+		return new ArrayList<>(kept.stream().map(Candidate::word).toList());
+	}
+
+	/**
+	 * does the box of a word of the given tile intersect some other tile? Only then can the word also have been seen there
+	 */
+	private static boolean inOverlap(Rectangle2D box, int tile, List<Rectangle2D> tiles) {
+		for (var t = 0; t < tiles.size(); t++) {
+			if (t != tile && tiles.get(t).intersects(box))
+				return true;
+		}
+		return false;
+	}
+
+	private static int cell(double coordinate) {
+		return (int) Math.floor(coordinate / CELL_SIZE);
+	}
+
+	private static long key(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+
+	private static boolean touchesInnerEdge(Rectangle2D box, Rectangle2D tile, int width, int height) {
+		return (tile.getMinX() > 0 && box.getMinX() - tile.getMinX() < EDGE_MARGIN)
+			   || (tile.getMinY() > 0 && box.getMinY() - tile.getMinY() < EDGE_MARGIN)
+			   || (tile.getMaxX() < width && tile.getMaxX() - box.getMaxX() < EDGE_MARGIN)
+			   || (tile.getMaxY() < height && tile.getMaxY() - box.getMaxY() < EDGE_MARGIN);
+	}
+
+	private static boolean isDuplicate(Rectangle2D a, Rectangle2D b, boolean cut) {
+		var overlapWidth = Math.min(a.getMaxX(), b.getMaxX()) - Math.max(a.getMinX(), b.getMinX());
+		var overlapHeight = Math.min(a.getMaxY(), b.getMaxY()) - Math.max(a.getMinY(), b.getMinY());
+		if (overlapWidth <= 0 || overlapHeight <= 0)
+			return false;
+		var overlap = overlapWidth * overlapHeight;
+		var areaA = a.getWidth() * a.getHeight();
+		var areaB = b.getWidth() * b.getHeight();
+		if (cut)
+			return overlap >= DUPLICATE_OVERLAP * Math.max(1.0, Math.min(areaA, areaB));
+		else
+			return overlap >= DUPLICATE_OVERLAP * Math.max(1.0, areaA + areaB - overlap);
+	}
+}